@@ -1,17 +1,71 @@
-
 package enigma;
 
+import static enigma.EnigmaException.*;
+
 /** An alphabet of encodable characters.  Provides a mapping from characters
  *  to and from indices into the alphabet.
  *  @author Vishal Bansal
  */
 class Alphabet {
 
+    /** Largest range of character codes indexed directly.  Alphabets
+     *  spanning more than this are looked up through a hash table. */
+    private static final int MAX_DIRECT_SPAN = 4096;
+
+    /** The characters of this alphabet, in order. */
+    private final char[] _chars;
+    /** Smallest character code in the alphabet. */
+    private final char _low;
+    /** Direct index: _direct[C - _low] is the index of C plus one, or 0
+     *  if C is absent.  Null if this alphabet is hashed. */
+    private final int[] _direct;
+    /** Open-addressed hash table of characters, used when _direct is null;
+     *  a slot holds the index of the character stored there plus one, or
+     *  0 if empty. */
+    private final int[] _hashed;
+    /** Mask for indexing _hashed. */
+    private final int _mask;
+
     /** A new alphabet containing CHARS. The K-th character has index
      *  K (numbering from 0). No character may be duplicated. */
-    private String _alphabet;
     Alphabet(String chars) {
-        _alphabet = chars;
+        if (chars.isEmpty()) {
+            throw error("empty alphabet");
+        }
+        _chars = chars.toCharArray();
+        char low = Character.MAX_VALUE, high = Character.MIN_VALUE;
+        for (char c : _chars) {
+            low = (char) Math.min(low, c);
+            high = (char) Math.max(high, c);
+        }
+        _low = low;
+        if (high - low < MAX_DIRECT_SPAN) {
+            _direct = new int[high - low + 1];
+            _hashed = null;
+            _mask = 0;
+            for (int i = 0; i < _chars.length; i++) {
+                if (_direct[_chars[i] - low] != 0) {
+                    throw error("duplicate character %c in alphabet",
+                            _chars[i]);
+                }
+                _direct[_chars[i] - low] = i + 1;
+            }
+        } else {
+            _direct = null;
+            _hashed = new int[Integer.highestOneBit(_chars.length) * 4];
+            _mask = _hashed.length - 1;
+            for (int i = 0; i < _chars.length; i++) {
+                int slot = hash(_chars[i]);
+                while (_hashed[slot] != 0) {
+                    if (_chars[_hashed[slot] - 1] == _chars[i]) {
+                        throw error("duplicate character %c in alphabet",
+                                _chars[i]);
+                    }
+                    slot = (slot + 1) & _mask;
+                }
+                _hashed[slot] = i + 1;
+            }
+        }
     }
 
     /** A default alphabet of all upper-case characters. */
@@ -21,24 +75,46 @@ class Alphabet {
 
     /** Returns the size of the alphabet. */
     int size() {
-        return _alphabet.length();
+        return _chars.length;
     }
 
     /** Returns true if CH is in this alphabet. */
     boolean contains(char ch) {
-        return _alphabet.indexOf(ch) != -1;
+        return toInt(ch) != -1;
     }
 
     /** Returns character number INDEX in the alphabet, where
      *  0 <= INDEX < size(). */
     char toChar(int index) {
-        return _alphabet.charAt(index);
+        return _chars[index];
     }
 
     /** Returns the index of character CH which must be in
-     *  the alphabet. This is the inverse of toChar(). */
+     *  the alphabet. This is the inverse of toChar().  Returns -1 if CH
+     *  is not in the alphabet. */
     int toInt(char ch) {
-        return _alphabet.indexOf(ch);
+        if (_direct != null) {
+            int k = ch - _low;
+            return k >= 0 && k < _direct.length ? _direct[k] - 1 : -1;
+        }
+        for (int slot = hash(ch); _hashed[slot] != 0;
+             slot = (slot + 1) & _mask) {
+            if (_chars[_hashed[slot] - 1] == ch) {
+                return _hashed[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the characters of this alphabet as a string. */
+    @Override
+    public String toString() {
+        return new String(_chars);
+    }
+
+    /** Returns the starting slot in _hashed for CH. */
+    private int hash(char ch) {
+        return (ch * 0x9E3779B1) >>> 16 & _mask;
     }
 
 }
@@ -0,0 +1,66 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Alphabet class.
+ *  @author Vishal Bansal
+ */
+public class AlphabetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Check that ALPHA maps each character of CHARS to its index and
+     *  back, and that it does not contain any character in ABSENT. */
+    private void checkAlphabet(Alphabet alpha, String chars, String absent) {
+        assertEquals(chars.length(), alpha.size());
+        for (int i = 0; i < chars.length(); i += 1) {
+            assertTrue(alpha.contains(chars.charAt(i)));
+            assertEquals(i, alpha.toInt(chars.charAt(i)));
+            assertEquals(chars.charAt(i), alpha.toChar(i));
+        }
+        for (int i = 0; i < absent.length(); i += 1) {
+            assertFalse(alpha.contains(absent.charAt(i)));
+            assertEquals(-1, alpha.toInt(absent.charAt(i)));
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testDefault() {
+        checkAlphabet(new Alphabet(), TestUtils.UPPER_STRING, "az0 \u00e9");
+    }
+
+    @Test
+    public void testLargeAlphabet() {
+        StringBuilder chars = new StringBuilder();
+        for (char c = 0; c < 256; c += 1) {
+            chars.append(c);
+        }
+        checkAlphabet(new Alphabet(chars.toString()), chars.toString(),
+                "\u0100\u4e2d");
+    }
+
+    @Test
+    public void testSparseAlphabet() {
+        String chars = "AZ\u03b1\u4e2d\u00e9\uffee";
+        checkAlphabet(new Alphabet(chars), chars, "BY\u03b2\u4e2e");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testDuplicate() {
+        new Alphabet("ABCA");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testSparseDuplicate() {
+        new Alphabet("A\u4e2dB\u4e2d");
+    }
+}
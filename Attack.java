@@ -0,0 +1,586 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static enigma.EnigmaException.*;
+
+/** A ciphertext-only attack on an Enigma machine, which recovers the key
+ *  in three stages.
+ *
+ *  First, every rotor order and starting setting is tried with all rings
+ *  at 0 and no plugboard, and the decryptions are scored by their index
+ *  of coincidence, which rises as the rotor key approaches the right one
+ *  even while the plugboard is wrong.  The best of these candidates then
+ *  have the rings of their two fastest moving rotors tried in turn, each
+ *  ring being paired with the setting that keeps the rotor's wiring where
+ *  it was, so that only the turnovers change.  Finally, each surviving
+ *  candidate's plugboard is found by hill-climbing: pairs are added,
+ *  changed or removed while the decryption's score under a language model
+ *  improves.  The rotor core for each message position is computed once
+ *  per candidate, so each plugboard tried costs one pass of table lookups
+ *  (see PlugboardSolver).
+ *
+ *  The work of each stage is divided among the threads of a work-stealing
+ *  pool, by ranges of the settings of each rotor order (see Keyspace) in
+ *  the first stage and by candidate in the others.  The search stops
+ *  early, with the best key found so far, when its time or key budget runs
+ *  out.
+ *  @author Vishal Bansal
+ */
+final class Attack {
+
+    /** An attack using the rotors available to CONFIG, in the slots it
+     *  provides, that ranks plugboards with SCORER. */
+    Attack(Machine config, Scorer scorer) {
+        _alphabet = config.alphabet();
+        _numRotors = config.numRotors();
+        _numPawls = config.numPawls();
+        _config = config;
+        _scorer = scorer;
+        _orders = new Bombe(config).rotorOrders();
+    }
+
+    /** Stop searching after TIME has elapsed. */
+    void setTimeLimit(Duration time) {
+        _timeLimit = time;
+    }
+
+    /** Stop searching after trying KEYS keys, counting each rotor key and
+     *  each plugboard tried. */
+    void setKeyLimit(long keys) {
+        _keyLimit = keys;
+    }
+
+    /** Keep the best CANDIDATES keys of the first stage for the later
+     *  ones. */
+    void setCandidates(int candidates) {
+        if (candidates < 1) {
+            throw error("need at least one candidate");
+        }
+        _candidates = candidates;
+    }
+
+    /** Divide the work among PARALLELISM threads. */
+    void setParallelism(int parallelism) {
+        _parallelism = parallelism;
+    }
+
+    /** Send each key that beats the best found so far in its stage to
+     *  LISTENER, which may be called from any thread of the search, but
+     *  only from one at a time. */
+    void setListener(Consumer<Candidate> listener) {
+        _listener = listener;
+    }
+
+    /** Return the number of keys tried by the last run. */
+    long keysTried() {
+        return _tried.get();
+    }
+
+    /** Return the rate at which the first stage of the last run tried
+     *  rotor keys, in keys per second. */
+    double keysPerSecond() {
+        return _keys == null ? 0 : _keys.keysPerSecond();
+    }
+
+    /** Return the best key found for CIPHERTEXT, ignoring whitespace. */
+    Candidate run(String ciphertext) {
+        int[] cipher = indices(ciphertext);
+        if (cipher.length < 2) {
+            throw error("ciphertext too short");
+        }
+        _tried.set(0);
+        _deadline = System.nanoTime() + _timeLimit.toNanos();
+        _keys = new Keyspace(_alphabet.size(), _numRotors - 1, 0);
+        int parts = Math.max(1, (TASKS_PER_THREAD * _parallelism
+                + _orders.size() - 1) / _orders.size());
+        List<Slice> slices = new ArrayList<>();
+        for (String[] order : _orders) {
+            for (Keyspace.Cursor keys : _keys.split(parts)) {
+                slices.add(new Slice(order, keys));
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(_parallelism);
+        try {
+            List<Candidate> found = stage(pool, Stage.ORDER, cipher, slices);
+            found = best(found, _candidates);
+            found = stage(pool, Stage.RINGS, cipher, found);
+            found = stage(pool, Stage.PLUGBOARD, cipher, found);
+            if (found.isEmpty()) {
+                throw error("no key tried within the budget");
+            }
+            return best(found, 1).get(0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Run the tasks of stage STAGE against CIPHER in POOL, one for each
+     *  of WORK, returning the candidates found. */
+    private List<Candidate> stage(ForkJoinPool pool, Stage stage,
+                                  int[] cipher, List<?> work) {
+        _best = null;
+        List<Search> tasks = new ArrayList<>();
+        for (Object item : work) {
+            tasks.add(new Search(stage, cipher, item));
+        }
+        for (Search task : tasks) {
+            pool.execute(task);
+        }
+        List<Candidate> result = new ArrayList<>();
+        for (Search task : tasks) {
+            result.addAll(task.join());
+        }
+        return result;
+    }
+
+    /** Return the (at most) COUNT highest scoring of CANDIDATES, best
+     *  first. */
+    private static List<Candidate> best(List<Candidate> candidates,
+                                        int count) {
+        List<Candidate> result = new ArrayList<>(candidates);
+        result.sort(Comparator.comparingDouble(Candidate::score).reversed());
+        return new ArrayList<>(result.subList(0,
+                Math.min(count, result.size())));
+    }
+
+    /** Return the indices of the characters of TEXT other than
+     *  whitespace. */
+    private int[] indices(String text) {
+        int[] result = new int[text.length()];
+        int k = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                result[k] = _alphabet.toInt(c);
+                if (result[k] == -1) {
+                    throw error("character %c not in alphabet", c);
+                }
+                k++;
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    /** Pass CANDIDATE to the listener if it is the best of its stage so
+     *  far. */
+    private synchronized void report(Candidate candidate) {
+        if (_best == null || candidate.score() > _best.score()) {
+            _best = candidate;
+            _listener.accept(candidate);
+        }
+    }
+
+    /** The stages of the attack. */
+    enum Stage {
+        /** Rotor order and starting setting. */
+        ORDER,
+        /** Ring settings. */
+        RINGS,
+        /** Plugboard. */
+        PLUGBOARD;
+    }
+
+    /** A range of the starting settings of one rotor order. */
+    private static final class Slice {
+        /** The settings visited by KEYS of the rotors named ORDER. */
+        Slice(String[] order, Keyspace.Cursor keys) {
+            _order = order;
+            _keys = keys;
+        }
+
+        /** Rotor names, starting with the reflector. */
+        private final String[] _order;
+        /** Settings. */
+        private final Keyspace.Cursor _keys;
+    }
+
+    /** One task of a stage: a range of settings of a rotor order in the
+     *  first stage, and a candidate in the others. */
+    private final class Search extends RecursiveTask<List<Candidate>> {
+
+        /** A task of stage STAGE against CIPHER for ITEM, a Slice or a
+         *  Candidate. */
+        Search(Stage stage, int[] cipher, Object item) {
+            _stage = stage;
+            _cipher = cipher;
+            _item = item;
+            _text = new int[cipher.length];
+        }
+
+        @Override
+        protected List<Candidate> compute() {
+            try {
+                switch (_stage) {
+                case ORDER:
+                    return searchOrder((Slice) _item);
+                case RINGS:
+                    return List.of(searchRings((Candidate) _item));
+                default:
+                    return List.of(searchPlugboard((Candidate) _item));
+                }
+            } finally {
+                _tried.addAndGet(-_granted);
+                _granted = 0;
+            }
+        }
+
+        /** Count one more key tried and return true iff the budget is
+         *  exhausted.  Keys are taken from the count shared by all tasks
+         *  BUDGET_GRANT at a time, and the time limit is checked at each
+         *  grant, so the threads of a search seldom touch shared state. */
+        private boolean exhausted() {
+            if (_granted == 0) {
+                if (_stopped) {
+                    return true;
+                }
+                long taken = _tried.getAndAdd(BUDGET_GRANT);
+                _granted = (int) Math.max(0,
+                        Math.min(BUDGET_GRANT, _keyLimit - taken));
+                if (System.nanoTime() - _deadline > 0) {
+                    _granted = 0;
+                }
+                if (_granted < BUDGET_GRANT) {
+                    _tried.addAndGet(_granted - BUDGET_GRANT);
+                }
+                if (_granted == 0) {
+                    _stopped = true;
+                    return true;
+                }
+            }
+            _granted -= 1;
+            return false;
+        }
+
+        /** Return the best candidates among the keys of SLICE. */
+        private List<Candidate> searchOrder(Slice slice) {
+            String[] order = slice._order;
+            BatchDecryptor decryptor = BatchDecryptor.create(machine(order));
+            BatchDecryptor.KeyBatch batch =
+                new BatchDecryptor.KeyBatch(_numRotors, BATCH_KEYS);
+            PriorityQueue<Candidate> kept =
+                new PriorityQueue<>(Comparator.comparingDouble(
+                        Candidate::score));
+            int[] start = new int[_numRotors - 1];
+            int[] rings = new int[_numRotors - 1];
+            boolean more = true;
+            while (more) {
+                batch.clear();
+                while (!batch.full()) {
+                    if (!slice._keys.next() || exhausted()) {
+                        more = false;
+                        break;
+                    }
+                    batch.add(slice._keys);
+                }
+                int[][] text = decryptor.decryptUnderKeys(_cipher,
+                        _cipher.length, batch);
+                for (int k = 0; k < batch.size(); k++) {
+                    double score = _coincidence.score(text[k], _cipher.length);
+                    if (kept.size() < _candidates
+                        || score > kept.peek().score()) {
+                        batch.get(k, start, rings);
+                        Candidate found = new Candidate(Stage.ORDER, order,
+                                start.clone(), rings.clone(), null, score);
+                        kept.add(found);
+                        if (kept.size() > _candidates) {
+                            kept.poll();
+                        }
+                        report(found);
+                    }
+                }
+            }
+            return new ArrayList<>(kept);
+        }
+
+        /** Return FROM with the best rings for its two fastest moving
+         *  rotors, tried one rotor at a time. */
+        private Candidate searchRings(Candidate from) {
+            Machine machine = machine(from.rotors());
+            int n = _alphabet.size();
+            int[] start = from._start.clone();
+            int[] rings = from._rings.clone();
+            double best = from.score();
+            int slowest = Math.max(_numRotors - _numPawls, _numRotors - 2);
+            for (int slot = _numRotors - 1; slot >= slowest; slot--) {
+                int i = slot - 1;
+                int bestRing = rings[i];
+                int offset = start[i] - rings[i];
+                for (int r = 0; r < n; r++) {
+                    if (exhausted()) {
+                        break;
+                    }
+                    rings[i] = r;
+                    start[i] = Math.floorMod(offset + r, n);
+                    double score = trial(machine, start, rings);
+                    if (score > best) {
+                        best = score;
+                        bestRing = r;
+                    }
+                }
+                rings[i] = bestRing;
+                start[i] = Math.floorMod(offset + bestRing, n);
+            }
+            Candidate result = new Candidate(Stage.RINGS, from.rotors(),
+                    start, rings, null, best);
+            report(result);
+            return result;
+        }
+
+        /** Return FROM with the plugboard found by hill-climbing. */
+        private Candidate searchPlugboard(Candidate from) {
+            Machine machine = machine(from.rotors());
+            setKey(machine, from._start, from._rings);
+            PlugboardSolver solver =
+                new PlugboardSolver(machine, _cipher, _scorer);
+            int n = _alphabet.size();
+            double best = solver.score();
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (int a = 0; a < n; a++) {
+                    for (int b = a + 1; b < n; b++) {
+                        if (exhausted()) {
+                            return plugged(from, solver);
+                        }
+                        if (solver.swap(a, b) > best) {
+                            best = solver.score();
+                            improved = true;
+                            report(plugged(from, solver));
+                        } else {
+                            solver.undo();
+                        }
+                    }
+                }
+            }
+            return plugged(from, solver);
+        }
+
+        /** Return FROM with the current plugboard and score of SOLVER. */
+        private Candidate plugged(Candidate from, PlugboardSolver solver) {
+            return new Candidate(Stage.PLUGBOARD, from.rotors(), from._start,
+                    from._rings, solver.plugboard(), solver.score());
+        }
+
+        /** Return the index of coincidence of the decryption of my
+         *  ciphertext by MACHINE, without a plugboard, starting at START
+         *  with rings RINGS. */
+        private double trial(Machine machine, int[] start, int[] rings) {
+            setKey(machine, start, rings);
+            for (int k = 0; k < _cipher.length; k++) {
+                _text[k] = machine.convert(_cipher[k]);
+            }
+            return _coincidence.score(_text, _text.length);
+        }
+
+        /** Stage of this task. */
+        private final Stage _stage;
+        /** The ciphertext, as indices. */
+        private final int[] _cipher;
+        /** Slice or candidate searched. */
+        private final Object _item;
+        /** Buffer for decryptions. */
+        private final int[] _text;
+        /** Keys taken from the shared count and not yet tried. */
+        private int _granted;
+        /** True once the budget is exhausted for this task. */
+        private boolean _stopped;
+        /** Scores rotor keys. */
+        private final Scorer _coincidence =
+            Scorer.indexOfCoincidence(_alphabet.size());
+    }
+
+    /** Return a machine of my own with the rotors named ORDER inserted and
+     *  no plugboard. */
+    private Machine machine(String[] order) {
+        Machine result = _config.fork();
+        result.insertRotors(order);
+        result.setPlugboard(new Permutation("", _alphabet));
+        return result;
+    }
+
+    /** Set the rotors of MACHINE to START with rings RINGS. */
+    private static void setKey(Machine machine, int[] start, int[] rings) {
+        for (int i = 1; i < machine.numRotors(); i++) {
+            machine.getRotor(i).setRing(rings[i - 1]);
+            machine.getRotor(i).set(start[i - 1]);
+        }
+    }
+
+    /** A key found by the attack. */
+    final class Candidate {
+
+        /** A key found in stage STAGE with rotors named ROTORS at settings
+         *  START and rings RINGS, and plugboard PLUG (each letter's partner,
+         *  or null for none), that scores SCORE. */
+        Candidate(Stage stage, String[] rotors, int[] start, int[] rings,
+                  int[] plug, double score) {
+            _stage = stage;
+            _rotorNames = rotors;
+            _start = start;
+            _rings = rings;
+            _plug = plug;
+            _score = score;
+        }
+
+        /** Return the stage that found me. */
+        Stage stage() {
+            return _stage;
+        }
+
+        /** Return the names of my rotors, starting with the reflector. */
+        String[] rotors() {
+            return _rotorNames;
+        }
+
+        /** Return my score in my stage.  Scores of different stages are
+         *  not comparable. */
+        double score() {
+            return _score;
+        }
+
+        /** Returns me as a settings line, as accepted by Main. */
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder("*");
+            for (String name : _rotorNames) {
+                result.append(' ').append(name);
+            }
+            result.append(' ');
+            for (int s : _start) {
+                result.append(_alphabet.toChar(s));
+            }
+            result.append(' ');
+            for (int r : _rings) {
+                result.append(_alphabet.toChar(r));
+            }
+            for (int c = 0; _plug != null && c < _plug.length; c++) {
+                if (_plug[c] > c) {
+                    result.append(" (").append(_alphabet.toChar(c))
+                        .append(_alphabet.toChar(_plug[c])).append(')');
+                }
+            }
+            return result.toString();
+        }
+
+        /** Stage that found me. */
+        private final Stage _stage;
+        /** Rotor names. */
+        private final String[] _rotorNames;
+        /** Starting settings, not counting the reflector. */
+        private final int[] _start;
+        /** Ring settings, not counting the reflector. */
+        private final int[] _rings;
+        /** Plugboard partners, or null. */
+        private final int[] _plug;
+        /** Score. */
+        private final double _score;
+    }
+
+    /** Print the best key found for a ciphertext, as specified by ARGS:
+     *  options, a configuration file, an n-gram model or count file (see
+     *  NgramModel.open) and a file holding the ciphertext.  The options
+     *  are --seconds=S and --keys=N, which limit the search (by default to
+     *  60 seconds), and --candidates=K, the number of rotor keys kept from
+     *  the first stage (by default 100).  Each improvement is printed as
+     *  it is found. */
+    public static void main(String... args) {
+        try {
+            List<String> files = new ArrayList<>();
+            long seconds = DEFAULT_SECONDS;
+            long keys = Long.MAX_VALUE;
+            int candidates = DEFAULT_CANDIDATES;
+            for (String arg : args) {
+                if (arg.startsWith("--seconds=")) {
+                    seconds = Long.parseLong(arg.substring(10));
+                } else if (arg.startsWith("--keys=")) {
+                    keys = Long.parseLong(arg.substring(7));
+                } else if (arg.startsWith("--candidates=")) {
+                    candidates = Integer.parseInt(arg.substring(13));
+                } else {
+                    files.add(arg);
+                }
+            }
+            if (files.size() != 3) {
+                throw error("Usage: java enigma.Attack [--seconds=S] "
+                        + "[--keys=N] [--candidates=K] CONFIG NGRAMS "
+                        + "CIPHERTEXT");
+            }
+            Machine config = Main.loadConfig(files.get(0));
+            Attack attack = new Attack(config,
+                    NgramModel.open(files.get(1), config.alphabet()));
+            attack.setTimeLimit(Duration.ofSeconds(seconds));
+            attack.setKeyLimit(keys);
+            attack.setCandidates(candidates);
+            attack.setListener(found -> System.err.printf("%-9s %12.4f %s%n",
+                    found.stage(), found.score(), found));
+            String cipher = new String(
+                    Files.readAllBytes(Paths.get(files.get(2))),
+                    StandardCharsets.UTF_8);
+            System.out.println(attack.run(cipher));
+            System.err.printf("%d keys, first stage %.0f keys/s%n",
+                    attack.keysTried(), attack.keysPerSecond());
+            return;
+        } catch (EnigmaException | NumberFormatException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        } catch (IOException excp) {
+            System.err.printf("Error: could not read %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Number of first-stage tasks per thread. */
+    private static final int TASKS_PER_THREAD = 4;
+    /** Number of keys a task takes from the shared budget at a time. */
+    private static final int BUDGET_GRANT = 256;
+    /** Number of rotor keys decrypted together in the first stage. */
+    private static final int BATCH_KEYS = 64;
+    /** Default time limit, in seconds. */
+    private static final long DEFAULT_SECONDS = 60;
+    /** Default number of first-stage candidates kept. */
+    private static final int DEFAULT_CANDIDATES = 100;
+
+    /** Alphabet of the machine attacked. */
+    private final Alphabet _alphabet;
+    /** Number of rotor slots. */
+    private final int _numRotors;
+    /** Number of moving rotor slots. */
+    private final int _numPawls;
+    /** Machine whose forks are searched. */
+    private final Machine _config;
+    /** Rotor orders searched. */
+    private final List<String[]> _orders;
+    /** Rotor keys of the first stage of the last run, or null. */
+    private Keyspace _keys;
+    /** Ranks plugboards. */
+    private final Scorer _scorer;
+    /** Time limit. */
+    private Duration _timeLimit = Duration.ofDays(365);
+    /** Most keys tried. */
+    private long _keyLimit = Long.MAX_VALUE;
+    /** Number of first-stage candidates kept. */
+    private int _candidates = DEFAULT_CANDIDATES;
+    /** Number of threads. */
+    private int _parallelism = Runtime.getRuntime().availableProcessors();
+    /** Receives improvements. */
+    private Consumer<Candidate> _listener = found -> { };
+    /** Keys tried in the current run, and taken by tasks to try. */
+    private final AtomicLong _tried = new AtomicLong();
+    /** System.nanoTime() at which the current run stops. */
+    private long _deadline;
+    /** Best candidate reported in the current stage. */
+    private Candidate _best;
+}
@@ -0,0 +1,88 @@
+package enigma;
+
+import java.time.Duration;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Attack class.
+ *  @author Vishal Bansal
+ */
+public class AttackTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    /** Plaintext of the test message. */
+    private static final String PLAIN =
+        "THISLICENSEAPPLIESTOANYPROGRAMOROTHERWORKWHICHCONTAINSANOTICE"
+        + "PLACEDBYTHECOPYRIGHTHOLDERSAYINGITMAYBEDISTRIBUTEDUNDERTHE"
+        + "TERMSOFTHISGENERALPUBLICLICENSETHEPROGRAMBELOWREFERSTOANY"
+        + "SUCHPROGRAMORWORKANDAWORKBASEDONTHEPROGRAMMEANSEITHERTHE"
+        + "PROGRAMORANYDERIVATIVEWORKUNDERCOPYRIGHTLAWTHATISTOSAYA"
+        + "WORKCONTAININGTHEPROGRAMORAPORTIONOFITEITHERVERBATIMOR";
+
+    /** Return a three-slot machine offering reflector B and naval rotors
+     *  I, II and III. */
+    private Machine machine() {
+        return TestUtils.navalMachine(3, 2, "B", "I:Q", "II:E", "III:V");
+    }
+
+    /** Return a scorer counting the characters of a text that agree with
+     *  PLAIN. */
+    private Scorer oracle() {
+        return (text, length) -> {
+            int score = 0;
+            for (int k = 0; k < length; k++) {
+                if (AZ.toChar(text[k]) == PLAIN.charAt(k)) {
+                    score += 1;
+                }
+            }
+            return score;
+        };
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testIndexOfCoincidence() {
+        Scorer ioc = Scorer.indexOfCoincidence(26);
+        assertEquals(1.0, ioc.score(new int[] { 3, 3, 3 }, 3), 1e-9);
+        assertEquals(0.0, ioc.score(new int[] { 0, 1, 2, 3 }, 4), 1e-9);
+        assertEquals(1.0 / 3, ioc.score(new int[] { 5, 5, 7, 7, 9 }, 4),
+                1e-9);
+    }
+
+    @Test
+    public void testRecoversKey() {
+        Machine mach = machine();
+        mach.insertRotors(new String[] { "B", "III", "I" });
+        mach.setRotors("KD");
+        mach.setPlugboard(new Permutation("(AM) (FI) (NV) (PS) (TU)", AZ));
+        String cipher = mach.convert(PLAIN);
+        Attack attack = new Attack(machine(), oracle());
+        attack.setCandidates(10);
+        attack.setParallelism(2);
+        Attack.Candidate best = attack.run(cipher);
+        assertEquals(PLAIN.length(), best.score(), 1e-9);
+        assertEquals("* B III I KD AA (AM) (FI) (NV) (PS) (TU)",
+                best.toString());
+        assertTrue(attack.keysTried() > 6 * 26 * 26);
+    }
+
+    @Test
+    public void testKeyLimit() {
+        Attack attack = new Attack(machine(), oracle());
+        attack.setKeyLimit(100);
+        attack.setCandidates(1);
+        attack.run(machine().alphabet().toString());
+        assertEquals(100, attack.keysTried());
+    }
+}
@@ -0,0 +1,341 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** Decrypts one ciphertext under many rotor keys at once.
+ *
+ *  A batch decryptor takes the rotors in the slots of a machine, and its
+ *  plugboard, and runs a batch of keys for them (settings and rings of the
+ *  rotors other than the reflector) through the ciphertext in lockstep.
+ *  The keys' states are kept in structure-of-arrays form, one array per
+ *  slot indexed by key, and the rotors' conversion tables are flattened
+ *  into one array each, so that each step of the machine and each rotor
+ *  pass is a tight loop over all the keys of the batch with no calls and
+ *  no allocation.  This is several times faster than converting the
+ *  ciphertext under each key in turn with Machine.convert.  A
+ *  VectorBatchDecryptor runs the rotor passes in vector lanes instead,
+ *  but has not yet measured faster (see Benchmark), so create returns one
+ *  only on request.
+ *  @author Vishal Bansal
+ */
+class BatchDecryptor {
+
+    /** Name of the module providing vector lanes. */
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    /** System property that, when "true", makes create use vector
+     *  lanes. */
+    static final String VECTOR_PROPERTY = "enigma.vector";
+
+    /** A decryptor for the rotors in the slots of MACHINE, which must all
+     *  be filled, with its plugboard. */
+    BatchDecryptor(Machine machine) {
+        _slots = machine.numRotors();
+        _size = machine.alphabet().size();
+        _wrap = _size * _size;
+        _forward = new int[_slots][];
+        _backward = new int[_slots][];
+        _notch = new boolean[_slots][];
+        _rotates = new boolean[_slots];
+        for (int i = 0; i < _slots; i++) {
+            Rotor rotor = machine.getRotor(i);
+            if (rotor == null) {
+                throw error("slot %d is empty", i);
+            }
+            Permutation perm = rotor.permutation();
+            _forward[i] = new int[_wrap];
+            _backward[i] = new int[_wrap];
+            _notch[i] = new boolean[_size];
+            for (int k = 0; k < _size; k++) {
+                for (int p = 0; p < _size; p++) {
+                    _forward[i][k * _size + p] =
+                        perm.wrap(perm.permute(p + k) - k);
+                    _backward[i][k * _size + p] =
+                        perm.wrap(perm.invert(p + k) - k);
+                }
+                _notch[i][k] = rotor.notchAt(k);
+            }
+            _rotates[i] = rotor.rotates();
+        }
+        Rotor reflector = machine.getRotor(0);
+        _reflector = perm(reflector.setting() - reflector.ring());
+        _plugboard = new int[_size];
+        for (int c = 0; c < _size; c++) {
+            _plugboard[c] = machine.plugboard().permute(c);
+        }
+        _setting = new int[_slots][0];
+        _offset = new int[_slots][0];
+        _text = new int[0];
+    }
+
+    /** Return a decryptor for MACHINE, as for BatchDecryptor(MACHINE).
+     *  This is a plain BatchDecryptor unless the system property
+     *  VECTOR_PROPERTY is "true" and the JVM has vector lanes, when it
+     *  is the result of vector(MACHINE). */
+    static BatchDecryptor create(Machine machine) {
+        if (Boolean.getBoolean(VECTOR_PROPERTY)) {
+            BatchDecryptor result = vector(machine);
+            if (result != null) {
+                return result;
+            }
+        }
+        return new BatchDecryptor(machine);
+    }
+
+    /** Return a decryptor for MACHINE, as for BatchDecryptor(MACHINE),
+     *  that runs the rotor passes in vector lanes (see
+     *  VectorBatchDecryptor), or null if the JVM was not started with
+     *  --add-modules jdk.incubator.vector.  The vector class is found
+     *  reflectively, so that it is loaded only when its module is
+     *  present. */
+    static BatchDecryptor vector(Machine machine) {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                return (BatchDecryptor) Class
+                    .forName("enigma.VectorBatchDecryptor")
+                    .getDeclaredConstructor(Machine.class)
+                    .newInstance(machine);
+            } catch (ReflectiveOperationException | LinkageError excp) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /** Return the number of rotor slots of my machine. */
+    int numRotors() {
+        return _slots;
+    }
+
+    /** Return the wrapped value of P times my alphabet size, the offset of
+     *  the row of a flattened table for setting P relative to the ring. */
+    private int perm(int p) {
+        return Math.floorMod(p, _size) * _size;
+    }
+
+    /** Return the decryptions of the first LENGTH characters of
+     *  CIPHERTEXT (as indices) under each key of KEYS: element K of the
+     *  result holds the decryption under key K in its first LENGTH
+     *  entries.  The result is mine, and is overwritten by the next
+     *  call. */
+    int[][] decryptUnderKeys(int[] ciphertext, int length, KeyBatch keys) {
+        if (keys.numRotors() != _slots) {
+            throw error("key batch is for %d slots", keys.numRotors());
+        }
+        int lanes = keys.size();
+        prepare(lanes, length);
+        for (int i = 1; i < _slots; i++) {
+            for (int k = 0; k < lanes; k++) {
+                _setting[i][k] = keys._settings[i][k];
+                _offset[i][k] = perm(keys._settings[i][k]
+                                     - keys._rings[i][k]);
+            }
+        }
+        int[] text = _text;
+        int[] plugboard = _plugboard;
+        for (int t = 0; t < length; t++) {
+            advance(lanes);
+            int in = plugboard[ciphertext[t]];
+            for (int k = 0; k < lanes; k++) {
+                text[k] = in;
+            }
+            scramble(text, 0, lanes);
+            for (int k = 0; k < lanes; k++) {
+                _output[k][t] = plugboard[text[k]];
+            }
+        }
+        long chars = (long) lanes * length;
+        Metrics.get().converted(chars, chars + _extraSteps);
+        _extraSteps = 0;
+        return _output;
+    }
+
+    /** Pass TEXT[K], for FROM <= K < TO, through the rotors of key K in
+     *  their current positions, without the plugboard. */
+    void scramble(int[] text, int from, int to) {
+        for (int i = _slots - 1; i > 0; i--) {
+            int[] table = _forward[i];
+            int[] offset = _offset[i];
+            for (int k = from; k < to; k++) {
+                text[k] = table[offset[k] + text[k]];
+            }
+        }
+        int[] reflector = _forward[0];
+        for (int k = from; k < to; k++) {
+            text[k] = reflector[_reflector + text[k]];
+        }
+        for (int i = 1; i < _slots; i++) {
+            int[] table = _backward[i];
+            int[] offset = _offset[i];
+            for (int k = from; k < to; k++) {
+                text[k] = table[offset[k] + text[k]];
+            }
+        }
+    }
+
+    /** Make room for LANES keys and decryptions of LENGTH characters. */
+    private void prepare(int lanes, int length) {
+        if (_text.length < lanes) {
+            _text = new int[lanes];
+            for (int i = 0; i < _slots; i++) {
+                _setting[i] = new int[lanes];
+                _offset[i] = new int[lanes];
+            }
+        }
+        if (_output.length < lanes || _length < length) {
+            _length = Math.max(length, _length);
+            _output = new int[Math.max(lanes, _output.length)][_length];
+        }
+    }
+
+    /** Advance the rotors of the first LANES keys, as Machine does.
+     *  Whether a rotor moves depends only on its own setting and that of
+     *  the rotor to its right, so the slots are advanced left to right,
+     *  each for all keys. */
+    private void advance(int lanes) {
+        int last = _slots - 1;
+        for (int i = 1; i < last; i++) {
+            if (!_rotates[i]) {
+                continue;
+            }
+            boolean[] notch = _notch[i], right = _notch[i + 1];
+            int[] setting = _setting[i], rightSetting = _setting[i + 1];
+            boolean pawlOnLeft = _rotates[i - 1];
+            for (int k = 0; k < lanes; k++) {
+                if (right[rightSetting[k]]
+                    || (pawlOnLeft && notch[setting[k]])) {
+                    step(i, k);
+                    _extraSteps += 1;
+                }
+            }
+        }
+        if (_rotates[last]) {
+            int[] setting = _setting[last], offset = _offset[last];
+            for (int k = 0; k < lanes; k++) {
+                int next = setting[k] + 1;
+                setting[k] = next == _size ? 0 : next;
+                next = offset[k] + _size;
+                offset[k] = next == _wrap ? 0 : next;
+            }
+        }
+    }
+
+    /** Advance the rotor in slot I of key K by one position. */
+    private void step(int i, int k) {
+        int setting = _setting[i][k] + 1;
+        _setting[i][k] = setting == _size ? 0 : setting;
+        int offset = _offset[i][k] + _size;
+        _offset[i][k] = offset == _wrap ? 0 : offset;
+    }
+
+    /** A batch of rotor keys for a machine: the settings and rings of its
+     *  rotors other than the reflector, stored by slot. */
+    static final class KeyBatch {
+
+        /** An empty batch of at most CAPACITY keys for a machine with
+         *  NUMROTORS slots. */
+        KeyBatch(int numRotors, int capacity) {
+            _settings = new int[numRotors][capacity];
+            _rings = new int[numRotors][capacity];
+        }
+
+        /** Return the number of slots of the machine. */
+        int numRotors() {
+            return _settings.length;
+        }
+
+        /** Return the number of keys in me. */
+        int size() {
+            return _size;
+        }
+
+        /** Return true iff I can hold no more keys. */
+        boolean full() {
+            return _size == _settings[0].length;
+        }
+
+        /** Remove all my keys. */
+        void clear() {
+            _size = 0;
+        }
+
+        /** Add the key with settings SETTINGS and rings RINGS, each
+         *  indexed by slot - 1. */
+        void add(int[] settings, int[] rings) {
+            if (full()) {
+                throw error("key batch is full");
+            }
+            for (int i = 1; i < _settings.length; i++) {
+                _settings[i][_size] = settings[i - 1];
+                _rings[i][_size] = rings[i - 1];
+            }
+            _size += 1;
+        }
+
+        /** Add the current key of KEYS. */
+        void add(Keyspace.Cursor keys) {
+            if (full()) {
+                throw error("key batch is full");
+            }
+            for (int i = 1; i < _settings.length; i++) {
+                _settings[i][_size] = keys.setting(i);
+                _rings[i][_size] = keys.ring(i);
+            }
+            _size += 1;
+        }
+
+        /** Copy the settings of key K into SETTINGS and its rings into
+         *  RINGS, each indexed by slot - 1. */
+        void get(int k, int[] settings, int[] rings) {
+            for (int i = 1; i < _settings.length; i++) {
+                settings[i - 1] = _settings[i][k];
+                rings[i - 1] = _rings[i][k];
+            }
+        }
+
+        /** _settings[I][K] is the setting of slot I in key K. */
+        private final int[][] _settings;
+        /** _rings[I][K] is the ring of slot I in key K. */
+        private final int[][] _rings;
+        /** Number of keys. */
+        private int _size;
+    }
+
+    /* The fields below that are not private are used by
+     * VectorBatchDecryptor. */
+
+    /** Number of rotor slots. */
+    final int _slots;
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Size of a flattened table: the square of _size. */
+    private final int _wrap;
+    /** _forward[I][K * _size + P] is the forward conversion of P by the
+     *  rotor in slot I when its setting is K ahead of its ring. */
+    final int[][] _forward;
+    /** _backward[I][K * _size + E] is the backward conversion of E by the
+     *  rotor in slot I when its setting is K ahead of its ring. */
+    final int[][] _backward;
+    /** _notch[I][S] is true iff setting S of the rotor in slot I is a
+     *  notch. */
+    private final boolean[][] _notch;
+    /** _rotates[I] is true iff the rotor in slot I has a pawl. */
+    private final boolean[] _rotates;
+    /** Offset of the reflector's row in _forward[0]. */
+    final int _reflector;
+    /** The plugboard, as a table. */
+    private final int[] _plugboard;
+    /** _setting[I][K] is the current setting of slot I in key K. */
+    private final int[][] _setting;
+    /** _offset[I][K] is the offset in the flattened tables of the row for
+     *  slot I in key K. */
+    final int[][] _offset;
+    /** The characters being converted, by key. */
+    private int[] _text;
+    /** Decryptions, by key. */
+    private int[][] _output = new int[0][0];
+    /** Length of each decryption in _output. */
+    private int _length;
+    /** Steps of rotors other than the fast one not yet reported to
+     *  Metrics. */
+    private long _extraSteps;
+}
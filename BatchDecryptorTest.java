@@ -0,0 +1,106 @@
+package enigma;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the BatchDecryptor class.
+ *  @author Vishal Bansal
+ */
+public class BatchDecryptorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a naval machine with rotors B, Beta, III and I, where I
+     *  has notches NOTCHES and III notch Q, and no plugboard. */
+    private Machine machine(String notches) {
+        Machine mach = TestUtils.navalMachine(4, 2, "B", "Beta", "III:Q",
+                "I:" + notches);
+        mach.insertRotors(new String[] { "B", "Beta", "III", "I" });
+        mach.setPlugboard(new Permutation("", TestUtils.UPPER));
+        return mach;
+    }
+
+    /** Check that DECRYPTOR decrypts CIPHER under each key of KEYS as
+     *  MACH does. */
+    private void checkBatch(Machine mach, BatchDecryptor decryptor,
+                            BatchDecryptor.KeyBatch keys, int[] cipher) {
+        int[][] text = decryptor.decryptUnderKeys(cipher, cipher.length,
+                keys);
+        int[] start = new int[3], rings = new int[3];
+        for (int k = 0; k < keys.size(); k++) {
+            keys.get(k, start, rings);
+            for (int i = 1; i < 4; i++) {
+                mach.getRotor(i).setRing(rings[i - 1]);
+                mach.getRotor(i).set(start[i - 1]);
+            }
+            for (int t = 0; t < cipher.length; t++) {
+                assertEquals("key " + k + " at " + t,
+                        mach.convert(cipher[t]), text[k][t]);
+            }
+        }
+    }
+
+    /** Return LENGTH random letters, as indices. */
+    private int[] cipher(int length) {
+        Random random = new Random(length);
+        int[] result = new int[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = random.nextInt(26);
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testMatchesMachine() {
+        Machine mach = machine("Q");
+        mach.setPlugboard(new Permutation("(AQ) (EP) (TZ)",
+                TestUtils.UPPER));
+        BatchDecryptor decryptor = BatchDecryptor.create(mach);
+        assertEquals(BatchDecryptor.class, decryptor.getClass());
+        BatchDecryptor vector = BatchDecryptor.vector(mach);
+        assertEquals(ModuleLayer.boot().findModule("jdk.incubator.vector")
+                     .isPresent(), vector != null);
+        Keyspace.Cursor cursor = new Keyspace(mach, 2).cursor(5000, 5100);
+        BatchDecryptor.KeyBatch keys = new BatchDecryptor.KeyBatch(4, 100);
+        while (cursor.next()) {
+            keys.add(cursor);
+        }
+        assertTrue(keys.full());
+        int[] cipher = cipher(700);
+        checkBatch(mach, decryptor, keys, cipher);
+        if (vector != null) {
+            checkBatch(mach, vector, keys, cipher);
+        }
+    }
+
+    @Test
+    public void testNotchesAndReuse() {
+        Machine mach = machine("QEV");
+        BatchDecryptor decryptor = new BatchDecryptor(mach);
+        BatchDecryptor.KeyBatch keys = new BatchDecryptor.KeyBatch(4, 8);
+        keys.add(new int[] { 0, 16, 4 }, new int[] { 0, 0, 0 });
+        keys.add(new int[] { 3, 15, 20 }, new int[] { 0, 5, 9 });
+        checkBatch(mach, decryptor, keys, cipher(40));
+        keys.clear();
+        assertEquals(0, keys.size());
+        keys.add(new int[] { 25, 25, 25 }, new int[] { 1, 2, 3 });
+        checkBatch(mach, decryptor, keys, cipher(1000));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testWrongSlots() {
+        BatchDecryptor decryptor = new BatchDecryptor(machine("Q"));
+        decryptor.decryptUnderKeys(cipher(5), 5,
+                new BatchDecryptor.KeyBatch(5, 1));
+    }
+}
@@ -0,0 +1,682 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/** Throughput benchmarks for the enigma package.  Each benchmark is run
+ *  repeatedly for a warm-up period and then measured, and is reported as
+ *  characters converted per second and bytes allocated per operation, as
+ *  counted by the JVM for the benchmarking thread.
+ *
+ *  Usage: java enigma.Benchmark [--max=SIZE] [NAME...]
+ *  runs the benchmarks whose names start with one of the NAMEs (all of
+ *  them by default).  SIZE (e.g. 64m or 1g) is the largest input used for
+ *  the end-to-end benchmarks of Main, which run on inputs of 1k, 32k, 1m,
+ *  32m and 1g bytes up to that size; it defaults to 32m.  The parse
+ *  benchmarks read a configuration of 10k rotors and 100k settings
+ *  lines.  The key benchmarks decrypt a 256-character message under 64
+ *  keys, one after another, as a batch and, if the JVM was started with
+ *  --add-modules jdk.incubator.vector, as a batch in vector lanes.  The
+ *  plugboard benchmarks score every plugboard one pair away from the
+ *  empty one for a 256-character message under a trigram model, and
+ *  report plugboards per second.  The
+ *  catalog benchmarks compute the characteristics of every setting of a
+ *  4-slot machine, and report settings per second.  The server benchmark
+ *  runs a Server on a local TCP port and 1000 clients that each send it ten
+ *  256-character requests at once, and also reports the rate of requests
+ *  and the median and 99th percentile of their latency.
+ *  @author Vishal Bansal
+ */
+public final class Benchmark {
+
+    /** Seconds spent warming up each benchmark. */
+    private static final double WARMUP_SECONDS = 1.0;
+    /** Seconds spent measuring each benchmark. */
+    private static final double MEASURE_SECONDS = 2.0;
+    /** Alphabet sizes benchmarked. */
+    private static final int[] SIZES = { 26, 64, 256 };
+    /** Number of characters converted per operation. */
+    private static final int CHARS = 1 << 12;
+    /** Number of keys decrypted together by the key benchmarks. */
+    private static final int BATCH_KEYS = 64;
+    /** Length of the ciphertext decrypted by the key benchmarks. */
+    private static final int CIPHER_LENGTH = 256;
+    /** Number of concurrent clients of the server benchmark. */
+    private static final int SERVER_CLIENTS = 1000;
+    /** Number of requests made by each client of the server benchmark. */
+    private static final int SERVER_ROUNDS = 10;
+    /** Number of rotors in the configuration used to benchmark parsing. */
+    private static final int LIBRARY_ROTORS = 10000;
+    /** Number of settings lines used to benchmark parsing. */
+    private static final int SETTINGS_LINES = 100000;
+
+    /** Run the benchmarks selected by ARGS. */
+    public static void main(String... args) throws IOException {
+        Benchmark bench = new Benchmark();
+        for (String arg : args) {
+            if (arg.startsWith("--max=")) {
+                bench._maxInput = parseSize(arg.substring("--max=".length()));
+            } else {
+                bench._filters.add(arg);
+            }
+        }
+        bench.run();
+    }
+
+    /** Run all selected benchmarks. */
+    private void run() throws IOException {
+        System.out.printf("%-44s %14s %12s%n", "benchmark", "chars/s",
+                "bytes/op");
+        for (int size : SIZES) {
+            Alphabet alpha = alphabet(size);
+            for (String shape : new String[] { "long", "pairs", "short" }) {
+                benchPermutation(alpha, shape);
+            }
+            benchRotor(alpha);
+        }
+        for (int slots = 3; slots <= 8; slots++) {
+            benchMachine(slots);
+        }
+        benchKeys(BATCH_KEYS);
+        benchPlugboard();
+        benchCatalog(4);
+        for (long size = 1 << 10; size <= _maxInput; size <<= 5) {
+            benchMain(size, false);
+            benchMain(size, true);
+        }
+        benchParse(LIBRARY_ROTORS, SETTINGS_LINES);
+        benchServer(SERVER_CLIENTS);
+    }
+
+    /** Benchmark permute and invert on a permutation of ALPHA whose
+     *  cycles have the given SHAPE. */
+    private void benchPermutation(Alphabet alpha, String shape) {
+        Permutation perm = new Permutation(cycles(alpha, shape), alpha);
+        int[] input = indices(alpha.size());
+        measure("permute/" + alpha.size() + "/" + shape, CHARS, () -> {
+            int sum = 0;
+            for (int c : input) {
+                sum += perm.permute(c);
+            }
+            return sum;
+        });
+        measure("invert/" + alpha.size() + "/" + shape, CHARS, () -> {
+            int sum = 0;
+            for (int c : input) {
+                sum += perm.invert(c);
+            }
+            return sum;
+        });
+    }
+
+    /** Benchmark Rotor.convertForward on a rotor over ALPHA. */
+    private void benchRotor(Alphabet alpha) {
+        Rotor rotor = new MovingRotor("R", new Permutation(
+                cycles(alpha, "long"), alpha), "");
+        int[] input = indices(alpha.size());
+        measure("convertForward/" + alpha.size(), CHARS, () -> {
+            int sum = 0;
+            for (int c : input) {
+                sum += rotor.convertForward(c);
+                rotor.advance();
+            }
+            return sum;
+        });
+    }
+
+    /** Benchmark Machine.convert on a 26-letter machine with SLOTS rotor
+     *  slots. */
+    private void benchMachine(int slots) {
+        Alphabet alpha = alphabet(26);
+        Machine mach = machine(alpha, slots);
+        int[] input = indices(alpha.size());
+        measure("Machine.convert(int)/" + slots, CHARS, () -> {
+            int sum = 0;
+            for (int c : input) {
+                sum += mach.convert(c);
+            }
+            return sum;
+        });
+        String msg = message(alpha, CHARS);
+        measure("Machine.convert(String)/" + slots, CHARS,
+            () -> mach.convert(msg).length());
+    }
+
+    /** Benchmark decrypting a short ciphertext under KEYS keys of a
+     *  5-slot machine, one key at a time with Machine.convert and all at
+     *  once with a BatchDecryptor. */
+    private void benchKeys(int keys) {
+        Alphabet alpha = alphabet(26);
+        Machine mach = machine(alpha, 5);
+        int[] cipher = Arrays.copyOf(indices(alpha.size()), CIPHER_LENGTH);
+        Keyspace.Cursor cursor = new Keyspace(mach, 0).cursor(0, keys);
+        BatchDecryptor.KeyBatch batch =
+            new BatchDecryptor.KeyBatch(5, keys);
+        while (cursor.next()) {
+            batch.add(cursor);
+        }
+        int[] start = new int[4], rings = new int[4];
+        measure("keys/serial/" + keys, keys * CIPHER_LENGTH, () -> {
+            int sum = 0;
+            for (int k = 0; k < keys; k++) {
+                batch.get(k, start, rings);
+                for (int i = 1; i < 5; i++) {
+                    mach.getRotor(i).setRing(rings[i - 1]);
+                    mach.getRotor(i).set(start[i - 1]);
+                }
+                for (int c : cipher) {
+                    sum += mach.convert(c);
+                }
+            }
+            return sum;
+        });
+        benchBatch("keys/batch/" + keys, new BatchDecryptor(mach), cipher,
+                batch);
+        BatchDecryptor vector = BatchDecryptor.vector(mach);
+        if (vector != null) {
+            benchBatch("keys/vector/" + keys, vector, cipher, batch);
+        }
+    }
+
+    /** Benchmark, under the name NAME, decrypting CIPHER under the keys of
+     *  BATCH with DECRYPTOR. */
+    private void benchBatch(String name, BatchDecryptor decryptor,
+                            int[] cipher, BatchDecryptor.KeyBatch batch) {
+        measure(name, batch.size() * CIPHER_LENGTH, () -> {
+            int[][] text = decryptor.decryptUnderKeys(cipher,
+                    CIPHER_LENGTH, batch);
+            int sum = 0;
+            for (int k = 0; k < batch.size(); k++) {
+                sum += text[k][CIPHER_LENGTH - 1];
+            }
+            return sum;
+        });
+    }
+
+    /** Benchmark scoring the plugboards that pair two letters, for a
+     *  short ciphertext on a 5-slot machine, with Machine.setPlugboard and
+     *  Machine.convert(String) and with a PlugboardSolver.  Rates are in
+     *  plugboards per second. */
+    private void benchPlugboard() {
+        Alphabet alpha = alphabet(26);
+        int n = alpha.size();
+        Machine mach = machine(alpha, 5);
+        String start = String.valueOf(alpha.toChar(0)).repeat(4);
+        String msg = message(alpha, CIPHER_LENGTH);
+        int[] cipher = new int[CIPHER_LENGTH];
+        for (int k = 0; k < CIPHER_LENGTH; k++) {
+            cipher[k] = alpha.toInt(msg.charAt(k));
+        }
+        Random random = new Random(n);
+        float[][] tables = new float[3][];
+        for (int k = 0; k < 3; k++) {
+            tables[k] = new float[(int) Math.pow(n, k + 1)];
+            for (int i = 0; i < tables[k].length; i++) {
+                tables[k][i] = -10 * random.nextFloat();
+            }
+        }
+        Scorer scorer = new NgramModel(alpha, tables);
+        int pairs = n * (n - 1) / 2;
+        int[] text = new int[CIPHER_LENGTH];
+        measure("plugboard/machine", pairs, () -> {
+            double sum = 0;
+            for (int a = 0; a < n; a++) {
+                for (int b = a + 1; b < n; b++) {
+                    mach.setPlugboard(new Permutation("(" + alpha.toChar(a)
+                            + alpha.toChar(b) + ")", alpha));
+                    mach.setRotors(start);
+                    String plain = mach.convert(msg);
+                    for (int k = 0; k < CIPHER_LENGTH; k++) {
+                        text[k] = alpha.toInt(plain.charAt(k));
+                    }
+                    sum += scorer.score(text, CIPHER_LENGTH);
+                }
+            }
+            return (long) sum;
+        });
+        mach.setPlugboard(new Permutation("", alpha));
+        mach.setRotors(start);
+        PlugboardSolver solver = new PlugboardSolver(mach, cipher, scorer);
+        measure("plugboard/solver", pairs, () -> {
+            double sum = 0;
+            for (int a = 0; a < n; a++) {
+                for (int b = a + 1; b < n; b++) {
+                    sum += solver.swap(a, b);
+                    solver.undo();
+                }
+            }
+            return (long) sum;
+        });
+    }
+
+    /** Benchmark computing the characteristics of every rotor order and
+     *  setting of a 26-letter machine with SLOTS slots, one setting at a
+     *  time with Machine.convert and all at once by building a
+     *  CycleCatalog.  Rates are in settings per second. */
+    private void benchCatalog(int slots) {
+        Alphabet alpha = alphabet(26);
+        int n = alpha.size();
+        Machine mach = machine(alpha, slots);
+        List<String[]> orders = new Bombe(mach).rotorOrders();
+        int perOrder = (int) Math.pow(n, slots - 1);
+        int[][] perms = new int[6][n];
+        int[] product = new int[n];
+        measure("catalog/convert/" + slots, orders.size() * perOrder, () -> {
+            long sum = 0;
+            for (String[] order : orders) {
+                mach.insertRotors(order);
+                for (int x = 0; x < perOrder; x++) {
+                    for (int c = 0; c < n; c++) {
+                        for (int i = slots - 1, r = x; i >= 1;
+                             i -= 1, r /= n) {
+                            mach.getRotor(i).set(r % n);
+                        }
+                        for (int k = 0; k < 6; k++) {
+                            perms[k][c] = mach.convert(c);
+                        }
+                    }
+                    for (int i = 0; i < 3; i++) {
+                        for (int c = 0; c < n; c++) {
+                            product[c] = perms[i + 3][perms[i][c]];
+                        }
+                        sum += CycleCatalog.cycleType(product);
+                    }
+                }
+            }
+            return sum;
+        });
+        measure("catalog/build/" + slots, orders.size() * perOrder,
+            () -> CycleCatalog.build(mach).characteristics());
+    }
+
+    /** Benchmark Main end to end on SIZE bytes of generated input, with
+     *  --stream iff STREAM. */
+    private void benchMain(long size, boolean stream) throws IOException {
+        File config = File.createTempFile("enigma", ".conf");
+        File input = File.createTempFile("enigma", ".in");
+        File output = File.createTempFile("enigma", ".out");
+        try {
+            Alphabet alpha = alphabet(26);
+            writeConfig(config, alpha, 5);
+            long chars = writeInput(input, alpha, size);
+            List<String> args = new ArrayList<>();
+            if (stream) {
+                args.add("--stream");
+            }
+            args.add(config.getPath());
+            args.add(input.getPath());
+            args.add(output.getPath());
+            String[] argv = args.toArray(new String[0]);
+            measure("Main" + (stream ? "/stream/" : "/lines/")
+                    + formatSize(size), chars, () -> {
+                    Main.main(argv);
+                    return output.length();
+                });
+        } finally {
+            config.delete();
+            input.delete();
+            output.delete();
+        }
+    }
+
+    /** Benchmark parsing a configuration of ROTORS rotors, and running
+     *  Main on LINES settings lines using that configuration, each
+     *  followed by a short message.  Rates are in rotors and settings
+     *  lines per second. */
+    private void benchParse(int rotors, int lines) throws IOException {
+        File config = File.createTempFile("enigma", ".conf");
+        File input = File.createTempFile("enigma", ".in");
+        File output = File.createTempFile("enigma", ".out");
+        try {
+            Alphabet alpha = alphabet(26);
+            Random random = new Random(rotors);
+            try (PrintStream out = new PrintStream(config, "US-ASCII")) {
+                out.printf("%s%n5 3%nR R %s%nF N %s%n", alpha,
+                        cycles(alpha, "pairs"), cycles(alpha, "long"));
+                for (int i = 0; i < rotors; i++) {
+                    out.printf("M%d M%c %s%n", i, alpha.toChar(i % 26),
+                            cycles(alpha, "long", i));
+                }
+            }
+            try (PrintStream out = new PrintStream(input, "US-ASCII")) {
+                for (int i = 0; i < lines; i++) {
+                    int first = random.nextInt(rotors - 2);
+                    out.printf("* R F M%d M%d M%d ABCD BCDE (AB) (CD) "
+                            + "(EF)%nHELLO%n", first, first + 1, first + 2);
+                }
+            }
+            measure("parse/config/" + rotors, rotors,
+                () -> Main.loadText(config.getPath()).numRotors());
+            String[] argv = { "--stream", config.getPath(), input.getPath(),
+                              output.getPath() };
+            measure("parse/settings/" + lines, lines, () -> {
+                    Main.main(argv);
+                    return output.length();
+                });
+        } finally {
+            config.delete();
+            input.delete();
+            output.delete();
+        }
+    }
+
+    /** Benchmark a Server on a local TCP port under CLIENTS concurrent
+     *  clients, each making SERVER_ROUNDS requests of a settings line and
+     *  a message of CIPHER_LENGTH characters, one after another. */
+    private void benchServer(int clients) throws IOException {
+        String name = "server/" + clients;
+        if (!selected(name)) {
+            return;
+        }
+        Alphabet alpha = alphabet(26);
+        byte[] request = ("* R R1 R2 R3 R4 AAAA\n"
+                          + message(alpha, CIPHER_LENGTH) + "\n")
+            .getBytes(StandardCharsets.US_ASCII);
+        try (Server server = new Server(machine(alpha, 5),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            Thread acceptor = new Thread(server::serve);
+            acceptor.setDaemon(true);
+            acceptor.start();
+            SocketAddress address = server.address();
+            runClients(address, request, clients, new long[clients]);
+            long[] latencies = new long[clients * SERVER_ROUNDS];
+            long start = System.nanoTime();
+            runClients(address, request, clients, latencies);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Arrays.sort(latencies);
+            System.out.printf("%-44s %14.4g %12s%n", name,
+                    latencies.length * CIPHER_LENGTH / seconds, "-");
+            System.out.printf("    %.0f requests/s (%s threads), latency "
+                    + "p50 %.2f ms, p99 %.2f ms%n",
+                    latencies.length / seconds,
+                    server.virtualThreads() ? "virtual" : "pooled",
+                    latencies[latencies.length / 2] / 1e6,
+                    latencies[latencies.length * 99 / 100] / 1e6);
+        } catch (InterruptedException excp) {
+            System.out.printf("%-44s failed: %s%n", name, excp);
+        }
+    }
+
+    /** Run CLIENTS threads that each send REQUEST to the server at
+     *  ADDRESS, reading each reply to the end, LATENCIES.length / CLIENTS
+     *  times, and store the latency of each request in LATENCIES. */
+    private static void runClients(SocketAddress address, byte[] request,
+                                   int clients, long[] latencies)
+        throws InterruptedException {
+        int rounds = latencies.length / clients;
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            threads[c] = new Thread(null, () -> {
+                byte[] reply = new byte[1 << 12];
+                for (int r = 0; r < rounds; r++) {
+                    long start = System.nanoTime();
+                    try (Socket socket = new Socket()) {
+                        socket.connect(address);
+                        OutputStream out = socket.getOutputStream();
+                        out.write(request);
+                        socket.shutdownOutput();
+                        InputStream in = socket.getInputStream();
+                        while (in.read(reply) != -1) {
+                            continue;
+                        }
+                    } catch (IOException excp) {
+                        throw new IllegalStateException(excp);
+                    }
+                    latencies[client * rounds + r] =
+                        System.nanoTime() - start;
+                }
+            }, "client", 1 << 16);
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /** Interface of benchmark bodies. */
+    private interface Body {
+        /** Perform one operation, returning a value that depends on its
+         *  result. */
+        long run() throws Exception;
+    }
+
+    /** If NAME is selected, run BODY repeatedly and report its rate
+     *  given that each run converts CHARS characters. */
+    private void measure(String name, long chars, Body body) {
+        if (!selected(name)) {
+            return;
+        }
+        try {
+            long[] counts = new long[3];
+            repeat(body, WARMUP_SECONDS, counts);
+            repeat(body, MEASURE_SECONDS, counts);
+            double seconds = counts[1] / 1e9;
+            System.out.printf("%-44s %14.4g %12.1f%n", name,
+                    chars * counts[0] / seconds,
+                    (double) counts[2] / counts[0]);
+        } catch (Exception excp) {
+            System.out.printf("%-44s failed: %s%n", name, excp);
+        }
+    }
+
+    /** Run BODY for at least SECONDS seconds, storing the number of runs,
+     *  nanoseconds elapsed and bytes allocated in COUNTS. */
+    private void repeat(Body body, double seconds, long[] counts)
+        throws Exception {
+        long ops = 0;
+        long bytes = allocated();
+        long start = System.nanoTime();
+        long limit = start + (long) (seconds * 1e9);
+        long now;
+        do {
+            _sink += body.run();
+            ops += 1;
+            now = System.nanoTime();
+        } while (now < limit);
+        counts[2] = allocated() - bytes;
+        counts[0] = ops;
+        counts[1] = now - start;
+    }
+
+    /** Return the number of bytes allocated by this thread so far. */
+    private static long allocated() {
+        return ((com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** Return true iff the benchmark NAME was selected. */
+    private boolean selected(String name) {
+        if (_filters.isEmpty()) {
+            return true;
+        }
+        for (String filter : _filters) {
+            if (name.startsWith(filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return an alphabet of SIZE characters. */
+    static Alphabet alphabet(int size) {
+        String letters = "ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+            + "abcdefghijklmnopqrstuvwxyz0123456789+/";
+        StringBuilder chars = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            chars.append(i < letters.length() ? letters.charAt(i)
+                         : (char) (0x100 + i));
+        }
+        return new Alphabet(chars.toString());
+    }
+
+    /** Return cycles permuting ALPHA whose SHAPE is "long" (one cycle of
+     *  every character), "pairs" (a derangement of 2-cycles) or "short"
+     *  (cycles of up to five characters). */
+    static String cycles(Alphabet alpha, String shape) {
+        return cycles(alpha, shape, 0);
+    }
+
+    /** Return cycles as for cycles(ALPHA, SHAPE), with the characters
+     *  shuffled according to SEED. */
+    static String cycles(Alphabet alpha, String shape, long seed) {
+        List<Character> chars = new ArrayList<>();
+        for (int i = 0; i < alpha.size(); i++) {
+            chars.add(alpha.toChar(i));
+        }
+        Collections.shuffle(chars, new Random(seed));
+        int length = shape.equals("long") ? chars.size()
+            : shape.equals("pairs") ? 2 : 5;
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < chars.size(); i += length) {
+            result.append('(');
+            for (int k = i; k < Math.min(i + length, chars.size()); k++) {
+                result.append(chars.get(k));
+            }
+            result.append(") ");
+        }
+        return result.toString();
+    }
+
+    /** Return a machine over ALPHA with SLOTS rotor slots, of which all
+     *  but the reflector and the leftmost rotor move, set to its first
+     *  setting. */
+    static Machine machine(Alphabet alpha, int slots) {
+        List<Rotor> rotors = new ArrayList<>();
+        String[] names = new String[slots];
+        names[0] = "R";
+        rotors.add(new Reflector("R", new Permutation(
+                cycles(alpha, "pairs"), alpha)));
+        for (int i = 1; i < slots; i++) {
+            names[i] = "R" + i;
+            Permutation perm = new Permutation(
+                cycles(alpha, "long", i), alpha);
+            if (i == 1) {
+                rotors.add(new FixedRotor(names[i], perm));
+            } else {
+                rotors.add(new MovingRotor(names[i], perm,
+                        String.valueOf(alpha.toChar(i))));
+            }
+        }
+        Machine mach = new Machine(alpha, slots, slots - 2, rotors);
+        mach.insertRotors(names);
+        mach.setRotors(String.valueOf(alpha.toChar(0)).repeat(slots - 1));
+        mach.setPlugboard(new Permutation("", alpha));
+        return mach;
+    }
+
+    /** Write a configuration for a 26-letter machine with SLOTS slots to
+     *  FILE, as for machine(). */
+    private static void writeConfig(File file, Alphabet alpha, int slots)
+        throws IOException {
+        try (PrintStream out = new PrintStream(file, "US-ASCII")) {
+            out.printf("%s%n%d %d%n", alpha, slots, slots - 2);
+            out.printf("R R %s%n", cycles(alpha, "pairs"));
+            for (int i = 1; i < slots; i++) {
+                out.printf("R%d %s %s%n", i,
+                        i == 1 ? "N" : "M" + alpha.toChar(i),
+                        cycles(alpha, "long", i));
+            }
+        }
+    }
+
+    /** Write at least SIZE bytes of settings and message lines over ALPHA
+     *  to FILE, returning the number of message characters written. */
+    private static long writeInput(File file, Alphabet alpha, long size)
+        throws IOException {
+        long chars = 0;
+        Random random = new Random(size);
+        try (Writer out = Files.newBufferedWriter(file.toPath(),
+                StandardCharsets.US_ASCII)) {
+            long written = 0;
+            while (written < size) {
+                if (written % (1 << 16) < 80) {
+                    String settings = "* R R1 R2 R3 R4 AAAA\n";
+                    out.write(settings);
+                    written += settings.length();
+                }
+                int length = 1 + random.nextInt(79);
+                for (int i = 0; i < length; i++) {
+                    out.write(alpha.toChar(random.nextInt(alpha.size())));
+                }
+                out.write('\n');
+                written += length + 1;
+                chars += length;
+            }
+        }
+        return chars;
+    }
+
+    /** Return the numbers 0 .. CHARS - 1 modulo SIZE. */
+    private static int[] indices(int size) {
+        int[] result = new int[CHARS];
+        Random random = new Random(size);
+        for (int i = 0; i < CHARS; i++) {
+            result[i] = random.nextInt(size);
+        }
+        return result;
+    }
+
+    /** Return a message of LENGTH random characters from ALPHA. */
+    private static String message(Alphabet alpha, int length) {
+        Random random = new Random(length);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            result.append(alpha.toChar(random.nextInt(alpha.size())));
+        }
+        return result.toString();
+    }
+
+    /** Return the number of bytes denoted by TEXT, a number optionally
+     *  followed by k, m or g. */
+    private static long parseSize(String text) {
+        String digits = text.replaceAll("[kKmMgG]$", "");
+        long result = Long.parseLong(digits);
+        switch (Character.toLowerCase(text.charAt(text.length() - 1))) {
+        case 'k':
+            return result << 10;
+        case 'm':
+            return result << 20;
+        case 'g':
+            return result << 30;
+        default:
+            return result;
+        }
+    }
+
+    /** Return SIZE, a number of bytes, in the form used by parseSize. */
+    private static String formatSize(long size) {
+        String[] units = { "", "k", "m", "g" };
+        int unit = 0;
+        while (size >= 1024 && size % 1024 == 0 && unit < 3) {
+            size /= 1024;
+            unit += 1;
+        }
+        return size + units[unit];
+    }
+
+    /** Names of the benchmarks to run, or empty for all. */
+    private final List<String> _filters = new ArrayList<>();
+    /** Size of the largest input for end-to-end benchmarks. */
+    private long _maxInput = 32 << 20;
+    /** Accumulates results so that benchmarked work is not optimized
+     *  away. */
+    private long _sink;
+}
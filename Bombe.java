@@ -0,0 +1,468 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import static enigma.EnigmaException.*;
+
+/** A known-plaintext attack on an Enigma machine after the
+ *  Turing-Welchman Bombe.
+ *
+ *  A crib (probable plaintext) placed against the ciphertext gives a menu:
+ *  a graph on the letters of the alphabet with an edge between each crib
+ *  letter and its cipher letter, labeled with its position.  For each
+ *  rotor order and starting setting, the Bombe guesses the plugboard
+ *  partner of the menu's most connected letter and follows the edges,
+ *  each of which fixes the partner of the letter at its other end through
+ *  the rotor core at that position.  The plugboard is an involution, so a
+ *  partner found for one letter also fixes the partner of the partner
+ *  (the diagonal board).  A guess that never assigns two partners to one
+ *  letter is a stop, reported with the plugboard pairs it implies.
+ *
+ *  Rotor orders are drawn from the available rotors of a configured
+ *  machine: a reflector, then non-moving rotors, then moving rotors in the
+ *  remaining slots.  The starting settings of each order are divided
+ *  into ranges (see Keyspace), each searched as a separate fork-join
+ *  task.
+ *  Ring settings are taken to be 0, so a stop's setting is correct up to
+ *  the ring settings, which matter only for turnovers.
+ *  @author Vishal Bansal
+ */
+final class Bombe {
+
+    /** Number of tasks per thread into which the settings searched are
+     *  divided. */
+    private static final int TASKS_PER_THREAD = 4;
+
+    /** A Bombe trying the rotors available to CONFIG, in the slots it
+     *  provides. */
+    Bombe(Machine config) {
+        _alphabet = config.alphabet();
+        _numRotors = config.numRotors();
+        _numPawls = config.numPawls();
+        _rotors = config.registry();
+        _config = config;
+    }
+
+    /** Return the stops found for CRIB placed against CIPHERTEXT starting
+     *  at character OFFSET of CIPHERTEXT (not counting blanks), in order
+     *  of rotor order. */
+    List<Stop> search(String ciphertext, String crib, int offset) {
+        int[] cipher = indices(ciphertext);
+        int[] plain = indices(crib);
+        if (plain.length == 0) {
+            throw error("empty crib");
+        }
+        if (offset < 0 || offset + plain.length > cipher.length) {
+            throw error("crib does not fit the ciphertext at %d", offset);
+        }
+        int[] from = new int[plain.length];
+        int[] to = new int[plain.length];
+        for (int i = 0; i < plain.length; i++) {
+            from[i] = plain[i];
+            to[i] = cipher[offset + i];
+            if (from[i] == to[i]) {
+                throw error("crib letter %c cannot encrypt to itself",
+                        _alphabet.toChar(from[i]));
+            }
+        }
+        Menu menu = new Menu(from, to, offset);
+        List<String[]> orders = rotorOrders();
+        _keys = new Keyspace(_alphabet.size(), _numRotors - 1, 0);
+        int parts = Math.max(1, (TASKS_PER_THREAD
+                * ForkJoinPool.getCommonPoolParallelism() + orders.size() - 1)
+                / orders.size());
+        List<OrderSearch> tasks = new ArrayList<>();
+        for (String[] order : orders) {
+            for (Keyspace.Cursor keys : _keys.split(parts)) {
+                tasks.add(new OrderSearch(order, menu, keys));
+            }
+        }
+        ForkJoinTask.invokeAll(tasks);
+        List<Stop> result = new ArrayList<>();
+        for (int t = 0; t < tasks.size(); t += parts) {
+            List<Stop> stops = new ArrayList<>();
+            for (OrderSearch task : tasks.subList(t, t + parts)) {
+                stops.addAll(task.join());
+            }
+            stops.sort(Comparator.comparingLong(stop -> rank(stop._setting)));
+            result.addAll(stops);
+        }
+        return result;
+    }
+
+    /** Return the rank of SETTING among all settings in odometer order. */
+    private long rank(String setting) {
+        long result = 0;
+        for (int i = 0; i < setting.length(); i++) {
+            result = result * _alphabet.size()
+                + _alphabet.toInt(setting.charAt(i));
+        }
+        return result;
+    }
+
+    /** Return the number of keys tried by the last search. */
+    long keysTried() {
+        return _keys == null ? 0 : _keys.visited();
+    }
+
+    /** Return the rate at which the last search tried keys, in keys per
+     *  second. */
+    double keysPerSecond() {
+        return _keys == null ? 0 : _keys.keysPerSecond();
+    }
+
+    /** Return the indices of the non-blank characters of TEXT. */
+    private int[] indices(String text) {
+        String letters = text.replace(" ", "");
+        int[] result = new int[letters.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = _alphabet.toInt(letters.charAt(i));
+            if (result[i] == -1) {
+                throw error("character %c not in alphabet",
+                        letters.charAt(i));
+            }
+        }
+        return result;
+    }
+
+    /** Return every choice of rotor names for the slots of my machine. */
+    List<String[]> rotorOrders() {
+        List<String[]> result = new ArrayList<>();
+        addOrders(new String[_numRotors], 0, result);
+        return result;
+    }
+
+    /** Add to RESULT every completion of ORDER, whose first SLOT entries
+     *  are filled in. */
+    private void addOrders(String[] order, int slot, List<String[]> result) {
+        if (slot == order.length) {
+            result.add(order.clone());
+            return;
+        }
+        for (int r = 0; r < _rotors.size(); r++) {
+            boolean fits;
+            if (slot == 0) {
+                fits = _rotors.reflecting(r);
+            } else if (slot < _numRotors - _numPawls) {
+                fits = !_rotors.reflecting(r) && !_rotors.rotates(r);
+            } else {
+                fits = _rotors.rotates(r);
+            }
+            if (fits && _rotors.indexOf(_rotors.name(r)) == r
+                && !Arrays.asList(order).subList(0, slot)
+                .contains(_rotors.name(r))) {
+                order[slot] = _rotors.name(r);
+                addOrders(order, slot + 1, result);
+            }
+        }
+    }
+
+    /** The letter-pair graph of a crib. */
+    private final class Menu {
+
+        /** A menu in which FROM[K] and TO[K] are joined at ciphertext
+         *  position OFFSET + K. */
+        Menu(int[] from, int[] to, int offset) {
+            int n = _alphabet.size();
+            _offset = offset;
+            _length = from.length;
+            int[] degree = new int[n];
+            for (int k = 0; k < from.length; k++) {
+                degree[from[k]] += 1;
+                degree[to[k]] += 1;
+            }
+            _edges = new int[n][];
+            _positions = new int[n][];
+            int best = 0;
+            for (int c = 0; c < n; c++) {
+                _edges[c] = new int[degree[c]];
+                _positions[c] = new int[degree[c]];
+                if (degree[c] > degree[best]) {
+                    best = c;
+                }
+                degree[c] = 0;
+            }
+            _test = best;
+            for (int k = 0; k < from.length; k++) {
+                addEdge(from[k], to[k], k, degree);
+                addEdge(to[k], from[k], k, degree);
+            }
+        }
+
+        /** Record an edge from A to B at crib position K, given that A
+         *  has COUNT[A] edges so far. */
+        private void addEdge(int a, int b, int k, int[] count) {
+            _edges[a][count[a]] = b;
+            _positions[a][count[a]] = k;
+            count[a] += 1;
+        }
+
+        /** Ciphertext position of the first crib letter. */
+        private final int _offset;
+        /** Number of crib letters. */
+        private final int _length;
+        /** _edges[C] lists the letters joined to C. */
+        private final int[][] _edges;
+        /** _positions[C][J] is the crib position of edge _edges[C][J]. */
+        private final int[][] _positions;
+        /** The letter whose partner is guessed. */
+        private final int _test;
+    }
+
+    /** The search of a range of the starting settings of one rotor
+     *  order.  Settings are visited in Gray-code order (see Keyspace), and
+     *  the rotor cores at the crib positions are kept in a circular
+     *  buffer.  When the next setting is the one the machine steps to from
+     *  the current one, or the one that steps to it, the cores shift by
+     *  one position, and only the core at the new end of the crib is
+     *  computed. */
+    private final class OrderSearch extends RecursiveTask<List<Stop>> {
+
+        /** A search of the rotor order ORDER against MENU, at the settings
+         *  visited by KEYS. */
+        OrderSearch(String[] order, Menu menu, Keyspace.Cursor keys) {
+            _order = order;
+            _menu = menu;
+            _keys = keys;
+        }
+
+        @Override
+        protected List<Stop> compute() {
+            Machine machine = _config.fork();
+            machine.insertRotors(_order);
+            Machine probe = machine.fork();
+            int n = _alphabet.size();
+            int length = _menu._length;
+            int[][] core = new int[length][n];
+            int first = 0;
+            int[] previous = new int[_numRotors - 1];
+            int[] start = new int[_numRotors - 1];
+            int[] partner = new int[n];
+            int[] queue = new int[n];
+            List<Stop> stops = new ArrayList<>();
+            boolean started = false;
+            while (_keys.next()) {
+                _keys.settings(start);
+                if (started && steps(probe, previous, start)) {
+                    machine.seek(1);
+                    scramble(machine, core[first]);
+                    first = (first + 1) % length;
+                } else if (started && steps(probe, start, previous)) {
+                    first = (first + length - 1) % length;
+                    _keys.apply(probe);
+                    probe.seek(_menu._offset + 1);
+                    scramble(probe, core[first]);
+                    _keys.apply(machine);
+                    machine.seek(_menu._offset + length);
+                } else {
+                    _keys.apply(machine);
+                    machine.seek(_menu._offset);
+                    first = 0;
+                    for (int k = 0; k < length; k++) {
+                        machine.seek(1);
+                        scramble(machine, core[k]);
+                    }
+                }
+                started = true;
+                System.arraycopy(start, 0, previous, 0, start.length);
+                for (int guess = 0; guess < n; guess++) {
+                    if (consistent(core, first, guess, partner, queue)) {
+                        stops.add(new Stop(_order, settings(start),
+                                pairs(partner)));
+                    }
+                }
+            }
+            return stops;
+        }
+
+        /** Return true iff PROBE steps from rotor settings FROM to rotor
+         *  settings TO, with rings at 0. */
+        private boolean steps(Machine probe, int[] from, int[] to) {
+            for (int i = 1; i < _numRotors; i++) {
+                probe.getRotor(i).setRing(0);
+                probe.getRotor(i).set(from[i - 1]);
+            }
+            probe.seek(1);
+            for (int i = 1; i < _numRotors; i++) {
+                if (probe.getRotor(i).setting() != to[i - 1]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Fill CORE with the rotor core of MACHINE at its current
+         *  setting. */
+        private void scramble(Machine machine, int[] core) {
+            for (int c = 0; c < core.length; c++) {
+                core[c] = machine.scramble(c);
+            }
+        }
+
+        /** Return true iff guessing that the menu's test letter has
+         *  plugboard partner GUESS leads to no contradiction, given that
+         *  CORE[(FIRST + K) % CORE.length] is the rotor core at crib
+         *  position K.  Fills PARTNER with the partners implied, or -1,
+         *  using QUEUE as a work list. */
+        private boolean consistent(int[][] core, int first, int guess,
+                                   int[] partner, int[] queue) {
+            Arrays.fill(partner, -1);
+            int size = 0;
+            if (!pair(_menu._test, guess, partner)) {
+                return false;
+            }
+            queue[size++] = _menu._test;
+            if (guess != _menu._test) {
+                queue[size++] = guess;
+            }
+            for (int head = 0; head < size; head++) {
+                int a = queue[head];
+                int[] edges = _menu._edges[a];
+                for (int j = 0; j < edges.length; j++) {
+                    int b = edges[j];
+                    int row = first + _menu._positions[a][j];
+                    if (row >= core.length) {
+                        row -= core.length;
+                    }
+                    int implied = core[row][partner[a]];
+                    if (partner[b] == -1) {
+                        if (!pair(b, implied, partner)) {
+                            return false;
+                        }
+                        queue[size++] = b;
+                        if (implied != b) {
+                            queue[size++] = implied;
+                        }
+                    } else if (partner[b] != implied) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /** Record A and B as plugboard partners in PARTNER, returning false
+         *  if either already has a different partner. */
+        private boolean pair(int a, int b, int[] partner) {
+            if (partner[a] != -1 && partner[a] != b
+                || partner[b] != -1 && partner[b] != a) {
+                return false;
+            }
+            partner[a] = b;
+            partner[b] = a;
+            return true;
+        }
+
+        /** Return START as a setting string. */
+        private String settings(int[] start) {
+            StringBuilder result = new StringBuilder();
+            for (int s : start) {
+                result.append(_alphabet.toChar(s));
+            }
+            return result.toString();
+        }
+
+        /** Return the plugboard cycles for the pairs in PARTNER. */
+        private String pairs(int[] partner) {
+            StringBuilder result = new StringBuilder();
+            for (int c = 0; c < partner.length; c++) {
+                if (partner[c] > c) {
+                    result.append(result.length() == 0 ? "(" : " (")
+                        .append(_alphabet.toChar(c))
+                        .append(_alphabet.toChar(partner[c])).append(')');
+                }
+            }
+            return result.toString();
+        }
+
+        /** Names of the rotors searched. */
+        private final String[] _order;
+        /** Menu tested. */
+        private final Menu _menu;
+        /** Settings searched. */
+        private final Keyspace.Cursor _keys;
+    }
+
+    /** A surviving rotor order, setting and plugboard. */
+    static final class Stop {
+
+        /** A stop with rotors named ROTORS at SETTING, with plugboard
+         *  cycles PLUGBOARD. */
+        Stop(String[] rotors, String setting, String plugboard) {
+            _rotors = rotors;
+            _setting = setting;
+            _plugboard = plugboard;
+        }
+
+        /** Return the names of my rotors, starting with the reflector. */
+        String[] rotors() {
+            return _rotors;
+        }
+
+        /** Return my rotor setting. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the plugboard pairs implied by the menu. */
+        String plugboard() {
+            return _plugboard;
+        }
+
+        /** Returns me as a settings line, as accepted by Main. */
+        @Override
+        public String toString() {
+            return "* " + String.join(" ", _rotors) + " " + _setting
+                + (_plugboard.isEmpty() ? "" : " " + _plugboard);
+        }
+
+        /** Rotor names. */
+        private final String[] _rotors;
+        /** Rotor setting. */
+        private final String _setting;
+        /** Implied plugboard cycles. */
+        private final String _plugboard;
+    }
+
+    /** Print the stops found for a crib against a ciphertext, as specified
+     *  by ARGS: a configuration file, the ciphertext, the crib and
+     *  optionally the crib's offset in the ciphertext (default 0). */
+    public static void main(String... args) {
+        try {
+            if (args.length < 3 || args.length > 4) {
+                throw error("Usage: java enigma.Bombe CONFIG CIPHERTEXT "
+                        + "CRIB [OFFSET]");
+            }
+            int offset = args.length == 4 ? Integer.parseInt(args[3]) : 0;
+            Bombe bombe = new Bombe(Main.loadConfig(args[0]));
+            for (Stop stop : bombe.search(args[1], args[2], offset)) {
+                System.out.println(stop);
+            }
+            System.err.printf("%d keys, %.0f keys/s%n", bombe.keysTried(),
+                    bombe.keysPerSecond());
+            return;
+        } catch (EnigmaException | NumberFormatException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Alphabet of the machine attacked. */
+    private final Alphabet _alphabet;
+    /** Number of rotor slots. */
+    private final int _numRotors;
+    /** Number of moving rotor slots. */
+    private final int _numPawls;
+    /** Available rotors. */
+    private final RotorRegistry _rotors;
+    /** Machine whose forks are searched. */
+    private final Machine _config;
+    /** Settings searched by the last search, or null. */
+    private Keyspace _keys;
+}
@@ -0,0 +1,62 @@
+package enigma;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Bombe class.
+ *  @author Vishal Bansal
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    /** Return a three-slot machine offering reflector B and naval rotors
+     *  I, II and III. */
+    private Machine machine() {
+        return TestUtils.navalMachine(3, 2, "B", "I:Q", "II:E", "III:V");
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRotorOrders() {
+        assertEquals(6, new Bombe(machine()).rotorOrders().size());
+    }
+
+    @Test
+    public void testFindsKey() {
+        Machine mach = machine();
+        mach.insertRotors(new String[] { "B", "II", "I" });
+        mach.setRotors("PQ");
+        mach.setPlugboard(new Permutation("(AM) (FI) (NV) (PS) (TU)", AZ));
+        String crib = "WETTERVORHERSAGEBISKAYA";
+        String cipher = mach.convert("XXXX" + crib + "XX");
+        List<Bombe.Stop> stops = new Bombe(machine()).search(cipher, crib, 4);
+        boolean found = false;
+        for (Bombe.Stop stop : stops) {
+            if (stop.toString().startsWith("* B II I PQ")) {
+                found = true;
+                for (String pair : stop.plugboard().split(" ")) {
+                    assertTrue(pair,
+                        "(AM) (FI) (NV) (PS) (TU)".contains(pair));
+                }
+            }
+        }
+        assertTrue(found);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testSelfEncryption() {
+        new Bombe(machine()).search("ABCD", "XBYZ", 0);
+    }
+}
@@ -0,0 +1,201 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import static enigma.EnigmaException.*;
+
+/** Reads and writes machine configurations in a precompiled binary form,
+ *  so that a large configuration need not be parsed each time it is used.
+ *
+ *  The compiled form of configuration file F is kept in F.bin.  It holds,
+ *  in little-endian order, a header giving the int MAGIC, the int
+ *  VERSION, the size and modification time (in milliseconds) of F when
+ *  it was compiled, as longs, and the CRC-32 checksum and length of the
+ *  rest of the file, as ints.  The rest holds the alphabet, the numbers
+ *  of slots and pawls, and the number of rotors, followed by each rotor's
+ *  name, type ('M', 'N' or 'R'), notches and permutation as a table of
+ *  the index each index maps to.  A rotor's table is read when the rotor
+ *  is first used.  Strings are written as an int length
+ *  followed by 16-bit characters.  A compiled file that does not match
+ *  its source's size and time, or whose checksum is wrong, is ignored.
+ *  @author Vishal Bansal
+ */
+final class CompiledConfig {
+
+    /** First int of a compiled configuration. */
+    static final int MAGIC = 0x47464345;
+    /** Version of the compiled format. */
+    static final int VERSION = 1;
+    /** Length of the header, in bytes. */
+    private static final int HEADER = 32;
+
+    /** Not instantiable. */
+    private CompiledConfig() {
+    }
+
+    /** Return the name of the compiled form of the configuration file
+     *  named CONFIG. */
+    static String compiledName(String config) {
+        return config + ".bin";
+    }
+
+    /** Write the compiled form of the configuration file named CONFIG,
+     *  as configured in MACHINE, to the file named OUTPUT. */
+    static void write(String config, Machine machine, String output) {
+        Path source = Paths.get(config);
+        RotorRegistry rotors = machine.registry();
+        int size = machine.alphabet().size();
+        int length = 12 + chars(machine.alphabet().toString());
+        for (int r = 0; r < rotors.size(); r++) {
+            length += chars(rotors.name(r)) + 1 + chars(rotors.notches(r))
+                + 4 * size;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        putString(payload, machine.alphabet().toString());
+        payload.putInt(machine.numRotors()).putInt(machine.numPawls())
+            .putInt(rotors.size());
+        for (int r = 0; r < rotors.size(); r++) {
+            putString(payload, rotors.name(r));
+            payload.put((byte) rotors.type(r));
+            putString(payload, rotors.notches(r));
+            Permutation perm = rotors.permutation(r);
+            for (int k = 0; k < size; k++) {
+                payload.putInt(perm.permute(k));
+            }
+        }
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        try (FileChannel out = FileChannel.open(Paths.get(output),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(Files.size(source))
+                .putLong(Files.getLastModifiedTime(source).toMillis())
+                .putInt((int) crc.getValue()).putInt(length).flip();
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            while (payload.hasRemaining()) {
+                out.write(payload);
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", output);
+        }
+    }
+
+    /** Return the number of bytes used to write S. */
+    private static int chars(String s) {
+        return 4 + 2 * s.length();
+    }
+
+    /** Write S to BUFFER. */
+    private static void putString(ByteBuffer buffer, String s) {
+        buffer.putInt(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buffer.putChar(s.charAt(i));
+        }
+    }
+
+    /** Return the string at the current position of BUFFER. */
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || 2L * length > buffer.remaining()) {
+            throw error("bad string length");
+        }
+        char[] result = new char[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = buffer.getChar();
+        }
+        return new String(result);
+    }
+
+    /** Return the machine described by the compiled form of the
+     *  configuration file named CONFIG, with no rotors inserted, or null
+     *  if there is no usable compiled form. */
+    static Machine load(String config) {
+        Path source = Paths.get(config);
+        Path compiled = Paths.get(compiledName(config));
+        try (FileChannel in = FileChannel.open(compiled)) {
+            if (in.size() < HEADER) {
+                return null;
+            }
+            ByteBuffer file = in.map(FileChannel.MapMode.READ_ONLY, 0,
+                    in.size()).order(ByteOrder.LITTLE_ENDIAN);
+            if (file.getInt(0) != MAGIC || file.getInt(4) != VERSION
+                || file.getLong(8) != Files.size(source)
+                || file.getLong(16)
+                   != Files.getLastModifiedTime(source).toMillis()
+                || file.getInt(28) != in.size() - HEADER) {
+                return null;
+            }
+            ByteBuffer payload = file.position(HEADER).slice()
+                .order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != file.getInt(24)) {
+                return null;
+            }
+            return read(payload);
+        } catch (IOException | EnigmaException
+                 | IndexOutOfBoundsException excp) {
+            return null;
+        }
+    }
+
+    /** Return the machine described by PAYLOAD, the body of a compiled
+     *  configuration.  Each rotor's permutation is read from PAYLOAD when
+     *  the rotor is first used. */
+    private static Machine read(ByteBuffer payload) {
+        Alphabet alphabet = new Alphabet(getString(payload));
+        int numRotors = payload.getInt();
+        int numPawls = payload.getInt();
+        int count = payload.getInt();
+        int size = alphabet.size();
+        RotorRegistry rotors = new RotorRegistry(alphabet, (start, end) -> {
+            int[] table = new int[size];
+            for (int k = 0; k < size; k++) {
+                table[k] = payload.getInt(start + 4 * k);
+            }
+            return new Permutation(table, alphabet);
+        });
+        for (int r = 0; r < count; r++) {
+            String name = getString(payload);
+            char type = (char) payload.get();
+            String notches = getString(payload);
+            int start = payload.position();
+            payload.position(start + 4 * size);
+            rotors.add(name, type, notches, start, payload.position());
+        }
+        return new Machine(alphabet, numRotors, numPawls, rotors);
+    }
+
+    /** Compile a configuration as specified by ARGS: the name of a
+     *  configuration file, and optionally the name of the output file
+     *  (by default, the compiled name of the configuration). */
+    public static void main(String... args) {
+        try {
+            if (args.length < 1 || args.length > 2) {
+                throw error("Usage: java enigma.CompiledConfig CONFIG "
+                        + "[OUTPUT]");
+            }
+            String output = args.length == 2 ? args[1]
+                : compiledName(args[0]);
+            write(args[0], Main.loadText(args[0]), output);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+}
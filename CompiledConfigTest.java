@@ -0,0 +1,104 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the CompiledConfig class.
+ *  @author Vishal Bansal
+ */
+public class CompiledConfigTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A small configuration. */
+    private static final String CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n"
+        + "4 2\n"
+        + "I MQ (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + "II ME (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)\n"
+        + "Beta N (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + "B R (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "  (RX) (SZ) (TV)\n";
+
+    /** Return the name of a new configuration file holding CONFIG, which
+     *  is deleted on exit along with its compiled form. */
+    private String config() throws IOException {
+        File result = File.createTempFile("config", ".conf");
+        result.deleteOnExit();
+        new File(CompiledConfig.compiledName(result.getPath()))
+            .deleteOnExit();
+        Files.write(result.toPath(), CONFIG.getBytes("UTF-8"));
+        return result.getPath();
+    }
+
+    /** Return the result of converting MSG with M at settings
+     *  "* B Beta II I AXL (YF)". */
+    private String convert(Machine m, String msg) {
+        m.insertRotors(new String[] { "B", "Beta", "II", "I" });
+        m.setRotors("AXL");
+        m.setPlugboard(new Permutation("(YF)", m.alphabet()));
+        return m.convert(msg);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        String name = config();
+        Machine text = Main.loadText(name);
+        assertNull(CompiledConfig.load(name));
+        CompiledConfig.write(name, text, CompiledConfig.compiledName(name));
+        Machine compiled = CompiledConfig.load(name);
+        assertNotNull(compiled);
+        assertEquals(4, compiled.numRotors());
+        assertEquals(2, compiled.numPawls());
+        assertEquals(4, compiled.allRotors().size());
+        for (Rotor rotor : compiled.allRotors()) {
+            if (rotor.name().equals("II")) {
+                assertTrue(rotor.rotates());
+                assertEquals("E", rotor.notches());
+            } else if (rotor.name().equals("B")) {
+                assertTrue(rotor.reflecting());
+            }
+        }
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        assertEquals(convert(text, msg), convert(compiled, msg));
+        assertEquals(convert(text, msg),
+                convert(Main.loadConfig(name), msg));
+    }
+
+    @Test
+    public void testStale() throws IOException {
+        String name = config();
+        CompiledConfig.write(name, Main.loadText(name),
+                CompiledConfig.compiledName(name));
+        File source = new File(name);
+        Files.setLastModifiedTime(source.toPath(),
+                FileTime.fromMillis(source.lastModified() + 2000));
+        assertNull(CompiledConfig.load(name));
+    }
+
+    @Test
+    public void testCorrupt() throws IOException {
+        String name = config();
+        String compiled = CompiledConfig.compiledName(name);
+        CompiledConfig.write(name, Main.loadText(name), compiled);
+        try (RandomAccessFile file = new RandomAccessFile(compiled, "rw")) {
+            file.seek(file.length() - 1);
+            file.write(file.read() ^ 1);
+        }
+        assertNull(CompiledConfig.load(name));
+    }
+}
@@ -0,0 +1,663 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import static enigma.EnigmaException.*;
+
+/** A catalog of the characteristics of every rotor order and setting of
+ *  a machine, for attacking traffic whose message keys are sent twice at
+ *  the start of each message.
+ *
+ *  If the rotor core (see PlugboardSolver) converts with permutations A to
+ *  F at the first six positions of a message, the products DA, EB and FC
+ *  take the first, second and third letters of the enciphered indicators
+ *  to the fourth, fifth and sixth.  The lengths of their cycles, the
+ *  characteristic, depend only on the rotor order and setting, since the
+ *  plugboard conjugates each product, which leaves its cycle lengths
+ *  unchanged.  A day's indicators determine the products, and the
+ *  catalog gives the few settings with that characteristic.  Settings are
+ *  taken with all rings at 0, as for Bombe.
+ *
+ *  The cycle lengths of one permutation, its cycle type, are encoded in a
+ *  long, longest cycle first, each cycle as as many one bits as its
+ *  length followed by a zero bit, so alphabets may have at most
+ *  MAX_ALPHABET characters.  Building computes the core's permutation at
+ *  each setting once per rotor order, rather than converting each letter
+ *  at six positions for every setting, and catalogs the rotor orders in
+ *  parallel.
+ *
+ *  A catalog is stored in a binary file holding, in little-endian order,
+ *  the ints MAGIC and VERSION, the size of the alphabet, the number of
+ *  rotor slots, the number of rotor orders, the number of slots of the
+ *  hash table, the number of characteristics and the number of settings,
+ *  then the alphabet's characters as 16-bit values, then the number of
+ *  bytes of the rotor orders and the orders themselves in UTF-8, one per
+ *  line with the rotor names separated by blanks, then the hash table and
+ *  then the settings.  Each hash table slot holds the three cycle types
+ *  of a characteristic, the index of its first setting and its number of
+ *  settings, or 0 if the slot is empty.  The settings are grouped by
+ *  characteristic, each as its rotor order's index times the number of
+ *  settings per order plus its rank in odometer order.  Sections start
+ *  at multiples of eight bytes.  Loading a file maps it into memory
+ *  without reading it, so a lookup reads only a slot or two and the
+ *  settings it returns.
+ *  @author Vishal Bansal
+ */
+final class CycleCatalog {
+
+    /** First int of a catalog file. */
+    static final int MAGIC = 0x43594345;
+    /** Version of the catalog file format. */
+    static final int VERSION = 1;
+    /** Largest alphabet whose cycle types fit in a long. */
+    static final int MAX_ALPHABET = 32;
+    /** Largest number of settings a catalog may hold. */
+    static final int MAX_SETTINGS = 1 << 22;
+    /** Length in bytes of the fixed part of a catalog file's header. */
+    private static final int HEADER = 32;
+    /** Length in bytes of a hash table slot. */
+    private static final int SLOT = 32;
+    /** Multiplier used to hash characteristics. */
+    private static final long MIX = 0x9e3779b97f4a7c15L;
+
+    /** The catalog of DATA, which is in catalog file format, described by
+     *  NAME in error messages. */
+    private CycleCatalog(ByteBuffer data, String name) {
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        if (data.limit() < HEADER || data.getInt(0) != MAGIC) {
+            throw error("%s is not a cycle catalog", name);
+        }
+        if (data.getInt(4) != VERSION) {
+            throw error("%s has unsupported version %d", name,
+                    data.getInt(4));
+        }
+        int n = data.getInt(8);
+        _numRotors = data.getInt(12);
+        int numOrders = data.getInt(16);
+        _slots = data.getInt(20);
+        _characteristics = data.getInt(24);
+        _size = data.getInt(28);
+        if (n < 1 || n > MAX_ALPHABET || _numRotors < 1 || numOrders < 1
+            || _slots < 1 || Integer.bitCount(_slots) != 1
+            || _characteristics < 1 || _characteristics > _size
+            || _slots < _characteristics) {
+            throw error("%s is corrupt", name);
+        }
+        _perOrder = settings(n, _numRotors);
+        long namesAt = HEADER + align(2L * n);
+        if (namesAt + 4 > data.limit()
+            || (long) numOrders * _perOrder != _size) {
+            throw error("%s is corrupt", name);
+        }
+        int namesLength = data.getInt((int) namesAt);
+        long slotsAt = namesAt + align(4L + namesLength);
+        long end = slotsAt + (long) SLOT * _slots + 4L * _size;
+        if (namesLength < 0 || end > data.limit()) {
+            throw error("%s is truncated", name);
+        }
+        StringBuilder chars = new StringBuilder();
+        for (int c = 0; c < n; c++) {
+            chars.append(data.getChar(HEADER + 2 * c));
+        }
+        _alphabet = new Alphabet(chars.toString());
+        byte[] names = new byte[namesLength];
+        data.slice((int) namesAt + 4, namesLength).get(names);
+        String[] lines = new String(names, StandardCharsets.UTF_8)
+            .split("\n");
+        if (lines.length != numOrders) {
+            throw error("%s is corrupt", name);
+        }
+        _orders = new String[numOrders][];
+        for (int k = 0; k < numOrders; k++) {
+            _orders[k] = lines[k].split(" ");
+            if (_orders[k].length != _numRotors) {
+                throw error("%s is corrupt", name);
+            }
+        }
+        _slotsAt = (int) slotsAt;
+        _entriesAt = (int) (slotsAt + (long) SLOT * _slots);
+        _data = data;
+    }
+
+    /** Return the catalog of every rotor order and setting of the rotors
+     *  available to CONFIG, in the slots it provides. */
+    static CycleCatalog build(Machine config) {
+        Alphabet alphabet = config.alphabet();
+        int n = alphabet.size();
+        if (n > MAX_ALPHABET) {
+            throw error("cycle types need an alphabet of at most %d "
+                    + "characters", MAX_ALPHABET);
+        }
+        List<String[]> orders = new Bombe(config).rotorOrders();
+        if (orders.isEmpty()) {
+            throw error("no rotor orders to catalog");
+        }
+        int perOrder = settings(n, config.numRotors());
+        long size = (long) perOrder * orders.size();
+        if (size > MAX_SETTINGS) {
+            throw error("catalog of %d settings is too large", size);
+        }
+        long[] types = new long[3 * (int) size];
+        List<OrderCatalog> tasks = new ArrayList<>();
+        for (int k = 0; k < orders.size(); k++) {
+            tasks.add(new OrderCatalog(config, orders.get(k), k * perOrder,
+                    perOrder, types));
+        }
+        ForkJoinTask.invokeAll(tasks);
+        return index(alphabet, config.numRotors(), orders, types);
+    }
+
+    /** Return the catalog of ALPHABET and NUMROTORS slots for the rotor
+     *  orders ORDERS whose settings have characteristics TYPES, three
+     *  cycle types for each in turn. */
+    private static CycleCatalog index(Alphabet alphabet, int numRotors,
+                                      List<String[]> orders, long[] types) {
+        int size = types.length / 3;
+        int[] table = new int[tableSize(size)];
+        int mask = table.length - 1;
+        int[] first = new int[size];
+        int[] count = new int[size];
+        int[] ids = new int[size];
+        int numTypes = 0;
+        for (int e = 0; e < size; e++) {
+            int h = hash(types[3 * e], types[3 * e + 1], types[3 * e + 2]);
+            while (table[h & mask] != 0
+                   && !same(types, 3 * first[table[h & mask] - 1], 3 * e)) {
+                h += 1;
+            }
+            if (table[h & mask] == 0) {
+                first[numTypes] = e;
+                numTypes += 1;
+                table[h & mask] = numTypes;
+            }
+            ids[e] = table[h & mask] - 1;
+            count[ids[e]] += 1;
+        }
+        int[] entries = new int[size];
+        int[] next = new int[numTypes];
+        for (int id = 1; id < numTypes; id++) {
+            next[id] = next[id - 1] + count[id - 1];
+        }
+        for (int e = 0; e < size; e++) {
+            entries[next[ids[e]]] = e;
+            next[ids[e]] += 1;
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (String[] order : orders) {
+            text.append(text.length() == 0 ? "" : "\n")
+                .append(String.join(" ", order));
+        }
+        byte[] names = text.toString().getBytes(StandardCharsets.UTF_8);
+        int slots = tableSize(numTypes);
+        long namesAt = HEADER + align(2L * alphabet.size());
+        long slotsAt = namesAt + align(4L + names.length);
+        long length = slotsAt + (long) SLOT * slots + 4L * size;
+        if (length > Integer.MAX_VALUE) {
+            throw error("catalog of %d settings is too large", size);
+        }
+        ByteBuffer data = ByteBuffer.allocate((int) length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(MAGIC).putInt(VERSION).putInt(alphabet.size())
+            .putInt(numRotors).putInt(orders.size()).putInt(slots)
+            .putInt(numTypes).putInt(size);
+        for (int c = 0; c < alphabet.size(); c++) {
+            data.putChar(alphabet.toChar(c));
+        }
+        data.position((int) namesAt);
+        data.putInt(names.length).put(names);
+        for (int id = 0, start = 0; id < numTypes; start += count[id],
+                 id += 1) {
+            int e = first[id];
+            int h = hash(types[3 * e], types[3 * e + 1], types[3 * e + 2]);
+            while (data.getInt(slotAt(slotsAt, h, slots) + 28) != 0) {
+                h += 1;
+            }
+            data.position(slotAt(slotsAt, h, slots));
+            data.putLong(types[3 * e]).putLong(types[3 * e + 1])
+                .putLong(types[3 * e + 2]).putInt(start).putInt(count[id]);
+        }
+        data.position((int) (slotsAt + (long) SLOT * slots));
+        data.asIntBuffer().put(entries);
+        data.clear();
+        return new CycleCatalog(data, "catalog");
+    }
+
+    /** Return the position in a catalog whose hash table of SLOTS slots
+     *  starts at SLOTSAT of the slot for hash H. */
+    private static int slotAt(long slotsAt, int h, int slots) {
+        return (int) (slotsAt + (long) SLOT * (h & (slots - 1)));
+    }
+
+    /** Return true iff the characteristics at TYPES[I] and TYPES[J] are
+     *  the same. */
+    private static boolean same(long[] types, int i, int j) {
+        return types[i] == types[j] && types[i + 1] == types[j + 1]
+            && types[i + 2] == types[j + 2];
+    }
+
+    /** Return the hash of the characteristic with cycle types A, B and
+     *  C. */
+    private static int hash(long a, long b, long c) {
+        long h = a * MIX;
+        h = (h ^ b) * MIX;
+        h = (h ^ c) * MIX;
+        return (int) (h >>> 32);
+    }
+
+    /** Return the smallest power of two at least twice N. */
+    private static int tableSize(int n) {
+        return Integer.highestOneBit(Math.max(1, 2 * n - 1)) << 1;
+    }
+
+    /** Return N rounded up to a multiple of eight. */
+    private static long align(long n) {
+        return (n + 7) & ~7L;
+    }
+
+    /** Return the number of settings of a machine with an alphabet of N
+     *  characters and NUMROTORS slots. */
+    private static int settings(int n, int numRotors) {
+        long result = 1;
+        for (int i = 1; i < numRotors; i++) {
+            result *= n;
+            if (result > MAX_SETTINGS) {
+                throw error("catalog of %d settings is too large", result);
+            }
+        }
+        return (int) result;
+    }
+
+    /** Return the catalog in the catalog file named NAME, memory-mapped. */
+    static CycleCatalog load(String name) {
+        try (FileChannel file = FileChannel.open(Paths.get(name))) {
+            if (file.size() > Integer.MAX_VALUE) {
+                throw error("%s is not a cycle catalog", name);
+            }
+            return new CycleCatalog(file.map(FileChannel.MapMode.READ_ONLY,
+                    0, file.size()), name);
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+    }
+
+    /** Write me to the file named NAME in catalog file format. */
+    void write(String name) {
+        ByteBuffer data = _data.duplicate();
+        data.clear();
+        try (FileChannel file = FileChannel.open(Paths.get(name),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                file.write(data);
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", name);
+        }
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of settings I hold. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the number of different characteristics of my settings. */
+    int characteristics() {
+        return _characteristics;
+    }
+
+    /** Return the settings, as settings lines accepted by Main, whose
+     *  characteristic is the three cycle types CHARACTERISTIC, in order
+     *  of rotor order and then of setting. */
+    List<String> lookup(long[] characteristic) {
+        if (characteristic.length != 3) {
+            throw error("a characteristic has three cycle types");
+        }
+        List<String> result = new ArrayList<>();
+        int h = hash(characteristic[0], characteristic[1],
+                characteristic[2]);
+        for (int probes = 0; probes < _slots; probes += 1, h += 1) {
+            int at = slotAt(_slotsAt, h, _slots);
+            int count = _data.getInt(at + 28);
+            if (count == 0) {
+                break;
+            }
+            if (_data.getLong(at) == characteristic[0]
+                && _data.getLong(at + 8) == characteristic[1]
+                && _data.getLong(at + 16) == characteristic[2]) {
+                int start = _data.getInt(at + 24);
+                if (start < 0 || count > _size - start) {
+                    throw error("catalog is corrupt");
+                }
+                for (int i = start; i < start + count; i++) {
+                    result.add(setting(_data.getInt(_entriesAt + 4 * i)));
+                }
+                break;
+            }
+        }
+        return result;
+    }
+
+    /** Return the settings line for the setting with index ENTRY. */
+    private String setting(int entry) {
+        if (entry < 0 || entry >= _size) {
+            throw error("catalog is corrupt");
+        }
+        int n = _alphabet.size();
+        char[] letters = new char[_numRotors - 1];
+        for (int i = letters.length - 1, r = entry % _perOrder; i >= 0;
+             i -= 1, r /= n) {
+            letters[i] = _alphabet.toChar(r % n);
+        }
+        return "* " + String.join(" ", _orders[entry / _perOrder]) + " "
+            + new String(letters);
+    }
+
+    /** Return the cycle type of PERM, a permutation of the indices
+     *  0 .. PERM.length - 1, where PERM.length <= MAX_ALPHABET. */
+    static long cycleType(int[] perm) {
+        if (perm.length > MAX_ALPHABET) {
+            throw error("cycle types need an alphabet of at most %d "
+                    + "characters", MAX_ALPHABET);
+        }
+        return cycleType(perm, new int[perm.length + 1]);
+    }
+
+    /** Return the cycle type of PERM, using COUNTS, of length
+     *  PERM.length + 1, to count the cycles of each length. */
+    private static long cycleType(int[] perm, int[] counts) {
+        int n = perm.length;
+        Arrays.fill(counts, 0);
+        long seen = 0;
+        for (int c = 0; c < n; c++) {
+            if ((seen & (1L << c)) == 0) {
+                int length = 0;
+                for (int x = c; (seen & (1L << x)) == 0; x = perm[x]) {
+                    seen |= 1L << x;
+                    length += 1;
+                }
+                counts[length] += 1;
+            }
+        }
+        return encode(counts);
+    }
+
+    /** Return the cycle type with COUNTS[L] cycles of length L. */
+    private static long encode(int[] counts) {
+        long result = 0;
+        for (int length = counts.length - 1; length >= 1; length--) {
+            for (int k = 0; k < counts[length]; k++) {
+                result = (result << (length + 1))
+                    | (((1L << length) - 1) << 1);
+            }
+        }
+        return result;
+    }
+
+    /** Return the cycle lengths of the cycle type TYPE, longest first and
+     *  separated by blanks. */
+    static String format(long type) {
+        List<String> lengths = new ArrayList<>();
+        while (type != 0) {
+            type >>>= 1;
+            int length = Long.numberOfTrailingZeros(~type);
+            lengths.add(0, Integer.toString(length));
+            type >>>= length;
+        }
+        return String.join(" ", lengths);
+    }
+
+    /** Return CHARACTERISTIC, three cycle types, as text accepted by
+     *  parse. */
+    static String format(long[] characteristic) {
+        List<String> types = new ArrayList<>();
+        for (long type : characteristic) {
+            types.add(format(type));
+        }
+        return String.join(", ", types);
+    }
+
+    /** Return the characteristic of a machine with an alphabet of N
+     *  characters given as TEXT: three lists of cycle lengths separated
+     *  by commas, each list separated by blanks and adding up to N, as
+     *  in "13 13, 10 10 3 3, 9 9 4 4". */
+    static long[] parse(String text, int n) {
+        String[] lists = text.split(",", -1);
+        if (lists.length != 3) {
+            throw error("a characteristic has three cycle types: %s", text);
+        }
+        long[] result = new long[3];
+        for (int i = 0; i < 3; i++) {
+            int[] counts = new int[n + 1];
+            int total = 0;
+            for (String field : lists[i].trim().split("\\s+")) {
+                int length;
+                try {
+                    length = Integer.parseInt(field);
+                } catch (NumberFormatException excp) {
+                    throw error("bad cycle length: %s", field);
+                }
+                if (length < 1 || length > n - total) {
+                    throw error("cycle lengths %s do not add up to %d",
+                            lists[i].trim(), n);
+                }
+                counts[length] += 1;
+                total += length;
+            }
+            if (total != n) {
+                throw error("cycle lengths %s do not add up to %d",
+                        lists[i].trim(), n);
+            }
+            result[i] = encode(counts);
+        }
+        return result;
+    }
+
+    /** Return the characteristic determined by INDICATORS, enciphered
+     *  doubled message keys of six characters of ALPHABET (blanks are
+     *  ignored), all sent with the same rotor setting. */
+    static long[] characteristic(Alphabet alphabet, List<String> indicators) {
+        int n = alphabet.size();
+        if (n > MAX_ALPHABET) {
+            throw error("cycle types need an alphabet of at most %d "
+                    + "characters", MAX_ALPHABET);
+        }
+        int[][] products = new int[3][n];
+        for (int[] product : products) {
+            Arrays.fill(product, -1);
+        }
+        for (String indicator : indicators) {
+            String letters = indicator.replace(" ", "");
+            if (letters.length() != 6) {
+                throw error("indicator %s is not six characters", indicator);
+            }
+            for (int i = 0; i < 3; i++) {
+                int from = alphabet.toInt(letters.charAt(i));
+                int to = alphabet.toInt(letters.charAt(i + 3));
+                if (from == -1 || to == -1) {
+                    throw error("indicator %s not in alphabet", indicator);
+                }
+                if (products[i][from] != -1 && products[i][from] != to) {
+                    throw error("indicators disagree at %s", indicator);
+                }
+                products[i][from] = to;
+            }
+        }
+        long[] result = new long[3];
+        for (int i = 0; i < 3; i++) {
+            for (int c = 0; c < n; c++) {
+                if (products[i][c] == -1) {
+                    throw error("indicators do not determine the "
+                            + "characteristic");
+                }
+            }
+            result[i] = cycleType(products[i]);
+        }
+        return result;
+    }
+
+    /** Computes the characteristics of the settings of one rotor order. */
+    private static final class OrderCatalog extends RecursiveAction {
+
+        /** Computes the characteristics of the PERORDER settings of
+         *  CONFIG with rotor order ORDER, storing those of the setting
+         *  with rank R at TYPES[3 * (FIRST + R)] and the two after. */
+        OrderCatalog(Machine config, String[] order, int first,
+                     int perOrder, long[] types) {
+            _config = config;
+            _order = order;
+            _first = first;
+            _perOrder = perOrder;
+            _types = types;
+        }
+
+        @Override
+        protected void compute() {
+            Machine machine = _config.fork();
+            machine.insertRotors(_order);
+            machine.setPlugboard(new Permutation("", machine.alphabet()));
+            int n = machine.alphabet().size();
+            int slots = machine.numRotors() - 1;
+            int[] core = new int[_perOrder * n];
+            int[] next = new int[_perOrder];
+            for (int x = 0; x < _perOrder; x++) {
+                for (int i = slots, r = x; i >= 1; i -= 1, r /= n) {
+                    machine.getRotor(i).setRing(0);
+                    machine.getRotor(i).set(r % n);
+                }
+                for (int c = 0; c < n; c++) {
+                    core[x * n + c] = machine.scramble(c);
+                }
+                machine.seek(1);
+                int y = 0;
+                for (int i = 1; i <= slots; i++) {
+                    y = y * n + machine.getRotor(i).setting();
+                }
+                next[x] = y;
+            }
+            int[] rows = new int[6];
+            int[] product = new int[n];
+            int[] counts = new int[n + 1];
+            for (int x = 0; x < _perOrder; x++) {
+                for (int k = 0, y = x; k < 6; k++) {
+                    y = next[y];
+                    rows[k] = y * n;
+                }
+                for (int i = 0; i < 3; i++) {
+                    int a = rows[i], d = rows[i + 3];
+                    for (int c = 0; c < n; c++) {
+                        product[c] = core[d + core[a + c]];
+                    }
+                    _types[3 * (_first + x) + i] =
+                        cycleType(product, counts);
+                }
+            }
+        }
+
+        /** Machine whose fork is cataloged. */
+        private final Machine _config;
+        /** Rotor order cataloged. */
+        private final String[] _order;
+        /** Index of my first setting in the catalog. */
+        private final int _first;
+        /** Number of settings of my rotor order. */
+        private final int _perOrder;
+        /** Cycle types of all settings of the catalog. */
+        private final long[] _types;
+    }
+
+    /** Build a catalog or look up a characteristic, as specified by ARGS:
+     *  either "build", a configuration file and the catalog file to
+     *  write, or "lookup", a catalog file and a characteristic as
+     *  accepted by parse or --indicators=FILE, a file of enciphered
+     *  doubled message keys, one per line. */
+    public static void main(String... args) {
+        try {
+            if (args.length == 3 && args[0].equals("build")) {
+                long start = System.nanoTime();
+                CycleCatalog catalog = build(Main.loadConfig(args[1]));
+                catalog.write(args[2]);
+                System.err.printf("%d settings, %d characteristics, "
+                        + "%.2f s%n", catalog.size(),
+                        catalog.characteristics(),
+                        (System.nanoTime() - start) / 1e9);
+                return;
+            }
+            if (args.length == 3 && args[0].equals("lookup")) {
+                CycleCatalog catalog = load(args[1]);
+                long[] characteristic;
+                if (args[2].startsWith("--indicators=")) {
+                    characteristic = characteristic(catalog.alphabet(),
+                            readLines(args[2].substring(13)));
+                    System.err.printf("characteristic %s%n",
+                            format(characteristic));
+                } else {
+                    characteristic = parse(args[2],
+                            catalog.alphabet().size());
+                }
+                for (String setting : catalog.lookup(characteristic)) {
+                    System.out.println(setting);
+                }
+                return;
+            }
+            throw error("Usage: java enigma.CycleCatalog (build CONFIG "
+                    + "CATALOG | lookup CATALOG (CHARACTERISTIC "
+                    + "| --indicators=FILE))");
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the non-blank lines of the file named NAME. */
+    private static List<String> readLines(String name) {
+        try {
+            List<String> result = new ArrayList<>();
+            for (String line : Files.readAllLines(Paths.get(name),
+                    StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    result.add(line.trim());
+                }
+            }
+            return result;
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+    }
+
+    /** Alphabet of the cataloged machine. */
+    private final Alphabet _alphabet;
+    /** Number of rotor slots of the cataloged machine. */
+    private final int _numRotors;
+    /** Rotor names of each rotor order, starting with the reflector. */
+    private final String[][] _orders;
+    /** Number of settings of each rotor order. */
+    private final int _perOrder;
+    /** Number of settings. */
+    private final int _size;
+    /** Number of different characteristics. */
+    private final int _characteristics;
+    /** Number of slots of the hash table. */
+    private final int _slots;
+    /** Positions in _data of the hash table and of the settings. */
+    private final int _slotsAt, _entriesAt;
+    /** My contents in catalog file format. */
+    private final ByteBuffer _data;
+}
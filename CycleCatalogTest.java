@@ -0,0 +1,141 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the CycleCatalog class.
+ *  @author Vishal Bansal
+ */
+public class CycleCatalogTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a machine with four slots, three of them moving, and rotors
+     *  B, I, II and III available. */
+    private Machine machine() {
+        return TestUtils.navalMachine(4, 3, "B", "I:Q", "II:E", "III:V");
+    }
+
+    /** Return the permutations of MACH at the first six positions of a
+     *  message sent at settings SETTING, found with convert. */
+    private int[][] positions(Machine mach, String setting) {
+        int[][] result = new int[6][26];
+        for (int c = 0; c < 26; c++) {
+            mach.setRotors(setting);
+            for (int k = 0; k < 6; k++) {
+                result[k][c] = mach.convert(c);
+            }
+        }
+        return result;
+    }
+
+    /** Return the characteristic of MACH at SETTING, found with
+     *  convert. */
+    private long[] characteristic(Machine mach, String setting) {
+        int[][] perms = positions(mach, setting);
+        long[] result = new long[3];
+        for (int i = 0; i < 3; i++) {
+            int[] product = new int[26];
+            for (int c = 0; c < 26; c++) {
+                product[c] = perms[i + 3][perms[i][c]];
+            }
+            result[i] = CycleCatalog.cycleType(product);
+        }
+        return result;
+    }
+
+    /** Return COUNT enciphered doubled message keys sent by MACH at
+     *  SETTING, with random message keys chosen by RANDOM. */
+    private List<String> indicators(Machine mach, String setting,
+                                    int count, Random random) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int k = 0; k < 3; k++) {
+                key.append((char) ('A' + random.nextInt(26)));
+            }
+            mach.setRotors(setting);
+            result.add(mach.convert(key.toString() + key));
+        }
+        return result;
+    }
+
+    /** Return the name of a new file holding BYTES, deleted on exit. */
+    private String file(byte[] bytes) throws IOException {
+        File result = File.createTempFile("catalog", ".bin");
+        result.deleteOnExit();
+        Files.write(result.toPath(), bytes);
+        return result.getPath();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testCycleType() {
+        Permutation cycles =
+            new Permutation("(ABC) (DE) (FGHIJ)", TestUtils.UPPER);
+        int[] perm = new int[26];
+        for (int c = 0; c < 26; c++) {
+            perm[c] = cycles.permute(c);
+        }
+        assertEquals("5 3 2" + " 1".repeat(16),
+                     CycleCatalog.format(CycleCatalog.cycleType(perm)));
+        long[] types = CycleCatalog.parse("13 13, 10 3 10 3,9 4 4 9", 26);
+        assertEquals("13 13, 10 10 3 3, 9 9 4 4",
+                     CycleCatalog.format(types));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadCharacteristic() {
+        CycleCatalog.parse("13 13, 10 10 3 3, 9 9 4", 26);
+    }
+
+    @Test
+    public void testLookup() throws IOException {
+        Machine mach = machine();
+        CycleCatalog catalog = CycleCatalog.build(mach);
+        assertEquals(6 * 26 * 26 * 26, catalog.size());
+        String name = file(new byte[0]);
+        catalog.write(name);
+        CycleCatalog loaded = CycleCatalog.load(name);
+        Random random = new Random(25);
+        String[][] orders = {
+            { "B", "I", "II", "III" }, { "B", "III", "I", "II" } };
+        for (String[] order : orders) {
+            mach.insertRotors(order);
+            mach.setPlugboard(new Permutation("(AQ) (WS) (ED) (RF)",
+                    TestUtils.UPPER));
+            for (String setting : new String[] { "AAA", "QEV", "XDU" }) {
+                long[] expected = characteristic(mach, setting);
+                List<String> settings = catalog.lookup(expected);
+                assertTrue(settings.contains("* " + String.join(" ", order)
+                        + " " + setting));
+                assertEquals(settings, loaded.lookup(expected));
+                assertEquals(CycleCatalog.format(expected),
+                        CycleCatalog.format(CycleCatalog.characteristic(
+                        TestUtils.UPPER,
+                        indicators(mach, setting, 400, random))));
+            }
+        }
+        assertEquals(List.of(), catalog.lookup(
+                CycleCatalog.parse("26, 26, 26", 26)));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNotACatalog() throws IOException {
+        CycleCatalog.load(file("not a catalog".getBytes("UTF-8")));
+    }
+}
@@ -0,0 +1,271 @@
+package enigma;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A reactive-streams stage that applies a machine to a stream of bytes
+ *  in the format read by Main, publishing the bytes Main would write.
+ *
+ *  The input may be split into buffers anywhere, even within a line or a
+ *  character, and the machine's rotors carry over from one buffer to the
+ *  next.  Settings lines ("*" lines) in the stream reconfigure the machine
+ *  there, as they do for Main.  The output for each input buffer is
+ *  published as soon as there is demand for it, in buffers of at most the
+ *  block size given to the constructor.
+ *
+ *  A processor requests one input buffer at a time, and only when it has
+ *  published all the output of the last and its subscriber has demand
+ *  for more, so it holds at most the output of one input buffer however
+ *  long the stream.  Bad input is reported to the subscriber by onError
+ *  with an EnigmaException, and cancels the subscription upstream.  An
+ *  error from upstream is passed on at once, dropping any output not yet
+ *  published, whether or not the subscriber has demand.  A
+ *  processor serves one stream and one subscriber.  Its methods may be
+ *  called from any threads, and it signals its subscriber from whichever
+ *  thread is calling it at the time, one signal at a time.
+ *  @author Vishal Bansal
+ */
+final class FlowProcessor
+    implements Flow.Processor<ByteBuffer, ByteBuffer> {
+
+    /** Default largest size of published buffers, in bytes. */
+    static final int BLOCK_SIZE = 1 << 13;
+
+    /** A processor that applies MACHINE, which is configured by the
+     *  settings lines in its input, to input encoded in CHARSET, and
+     *  publishes output in CHARSET in buffers of at most BLOCK_SIZE
+     *  bytes. */
+    FlowProcessor(Machine machine, Charset charset) {
+        this(machine, charset, BLOCK_SIZE);
+    }
+
+    /** A processor as for FlowProcessor(MACHINE, CHARSET) that publishes
+     *  buffers of at most BLOCKSIZE bytes. */
+    FlowProcessor(Machine machine, Charset charset, int blockSize) {
+        _stream = new StreamProcessor(machine,
+                settings -> Main.setUp(machine, settings), charset,
+                blockSize);
+        _stream.start(new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                _outbound.add(ByteBuffer.wrap(
+                        Arrays.copyOfRange(b, off, off + len)));
+            }
+        });
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription);
+        if (_upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        _upstream = subscription;
+        drain();
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        Objects.requireNonNull(item);
+        _inbound.add(item);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Objects.requireNonNull(throwable);
+        _upstreamError = throwable;
+        _upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        _upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber);
+        synchronized (this) {
+            if (_subscriber == null) {
+                _subscriber = subscriber;
+            } else {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(new IllegalStateException(
+                        "processor already has a subscriber"));
+                return;
+            }
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    _badRequest = true;
+                } else {
+                    _demand.accumulateAndGet(n,
+                        (d, m) -> d + m < 0 ? Long.MAX_VALUE : d + m);
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                _cancelled = true;
+                drain();
+            }
+        });
+        drain();
+    }
+
+    /** Do all the work that the signals received so far allow: publish
+     *  output while there is demand, process the next input buffer once
+     *  all output is published, and request another when there is
+     *  demand and nothing left to publish.  Only one thread drains at a
+     *  time; a thread that calls this while another is draining leaves
+     *  the work to that thread, which goes round again. */
+    private void drain() {
+        if (_wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            if (_subscriber != null && !_terminated) {
+                step();
+            }
+            missed = _wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /** Do the work of drain for my subscriber until more signals are
+     *  needed. */
+    private void step() {
+        while (true) {
+            if (_cancelled) {
+                terminate(null);
+                return;
+            }
+            if (_badRequest) {
+                terminate(new IllegalArgumentException(
+                        "non-positive request"));
+                return;
+            }
+            if (_upstreamError != null) {
+                terminate(_upstreamError);
+                return;
+            }
+            if (!_outbound.isEmpty()) {
+                if (_demand.get() == 0) {
+                    return;
+                }
+                _demand.decrementAndGet();
+                _subscriber.onNext(_outbound.remove());
+                continue;
+            }
+            ByteBuffer item = _inbound.poll();
+            if (item != null) {
+                _requested = false;
+                try {
+                    _stream.feed(item);
+                } catch (EnigmaException excp) {
+                    terminate(excp);
+                    return;
+                }
+                continue;
+            }
+            if (_upstreamDone) {
+                if (!_finished) {
+                    _finished = true;
+                    try {
+                        _stream.finish();
+                    } catch (EnigmaException excp) {
+                        terminate(excp);
+                        return;
+                    }
+                    continue;
+                }
+                _terminated = true;
+                _subscriber.onComplete();
+                return;
+            }
+            if (!_requested && _upstream != null && _demand.get() > 0) {
+                _requested = true;
+                _upstream.request(1);
+                continue;
+            }
+            return;
+        }
+    }
+
+    /** Stop for good, cancelling the upstream subscription if it may still
+     *  be active and passing ERROR, if not null, to my subscriber. */
+    private void terminate(Throwable error) {
+        _terminated = true;
+        _outbound.clear();
+        _inbound.clear();
+        if (!_upstreamDone && _upstream != null) {
+            _upstream.cancel();
+        }
+        if (error != null) {
+            _subscriber.onError(error);
+        }
+    }
+
+    /** Converts the stream. */
+    private final StreamProcessor _stream;
+    /** Output not yet published.  Used only while draining. */
+    private final Queue<ByteBuffer> _outbound = new ArrayDeque<>();
+    /** Input received and not yet processed. */
+    private final Queue<ByteBuffer> _inbound = new ConcurrentLinkedQueue<>();
+    /** Number of buffers requested by my subscriber and not yet
+     *  published. */
+    private final AtomicLong _demand = new AtomicLong();
+    /** Number of calls to drain not yet handled. */
+    private final AtomicInteger _wip = new AtomicInteger();
+    /** The subscription to my input, or null. */
+    private volatile Flow.Subscription _upstream;
+    /** My subscriber, or null. */
+    private volatile Flow.Subscriber<? super ByteBuffer> _subscriber;
+    /** True iff my input has ended. */
+    private volatile boolean _upstreamDone;
+    /** The error that ended my input, or null. */
+    private volatile Throwable _upstreamError;
+    /** True iff my subscriber has cancelled. */
+    private volatile boolean _cancelled;
+    /** True iff my subscriber requested a non-positive number of
+     *  buffers. */
+    private volatile boolean _badRequest;
+    /** True iff an input buffer has been requested and not received.
+     *  Used only while draining. */
+    private boolean _requested;
+    /** True iff the end of the stream has been processed.  Used only
+     *  while draining. */
+    private boolean _finished;
+    /** True iff my subscriber has been sent onComplete or onError, or has
+     *  cancelled.  Used only while draining. */
+    private boolean _terminated;
+}
@@ -0,0 +1,218 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the FlowProcessor class.
+ *  @author Vishal Bansal
+ */
+public class FlowProcessorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Input used by the tests. */
+    private static final String INPUT =
+        "* B Beta III IV AXL (YF) (ZH)\nHELLO WORLD\n\n"
+        + "* B Beta IV III AAA\nFROM HIS SHOULDER HIAWATHA\n";
+
+    /** Return a naval machine with rotors B, Beta, III and IV available,
+     *  and no rotors inserted. */
+    private Machine config() {
+        return TestUtils.navalMachine(4, 2, "B", "Beta", "III:V", "IV:J");
+    }
+
+    /** Return the output of a StreamProcessor for TEXT. */
+    private String expected(String text) {
+        Machine mach = config();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamProcessor stream = new StreamProcessor(mach,
+                settings -> Main.setUp(mach, settings),
+                StandardCharsets.UTF_8);
+        stream.start(out);
+        stream.feed(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        stream.finish();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Publishes the bytes of a string in pieces of a given size, as they
+     *  are requested, from the requesting thread. */
+    private static class Pieces implements Flow.Publisher<ByteBuffer> {
+        /** Publishes TEXT in pieces of SIZE bytes. */
+        Pieces(String text, int size) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < bytes.length; i += size) {
+                _pieces.add(ByteBuffer.wrap(bytes, i,
+                        Math.min(size, bytes.length - i)).slice());
+            }
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> sub) {
+            sub.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    _requested += n;
+                    for (; n > 0 && _next < _pieces.size(); n--) {
+                        sub.onNext(_pieces.get(_next));
+                        _next += 1;
+                    }
+                    if (_next == _pieces.size() && !_done) {
+                        _done = true;
+                        sub.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    _cancelled = true;
+                }
+            });
+        }
+
+        /** The pieces. */
+        private final List<ByteBuffer> _pieces = new ArrayList<>();
+        /** Index of the next piece, and total requested. */
+        private int _next, _requested;
+        /** True iff complete, and iff cancelled. */
+        private boolean _done, _cancelled;
+    }
+
+    /** Collects what it is published, requesting one buffer at a time
+     *  while it is not paused. */
+    private static class Collector implements Flow.Subscriber<ByteBuffer> {
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            _subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            _received += 1;
+            while (item.hasRemaining()) {
+                _text.append((char) item.get());
+            }
+            if (!_paused) {
+                _subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            _error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            _complete = true;
+        }
+
+        /** The subscription. */
+        private Flow.Subscription _subscription;
+        /** Text received. */
+        private final StringBuilder _text = new StringBuilder();
+        /** Number of buffers received. */
+        private int _received;
+        /** True iff I stop requesting. */
+        private boolean _paused;
+        /** True iff complete. */
+        private boolean _complete;
+        /** Error received, or null. */
+        private Throwable _error;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testPieces() {
+        String expected = expected(INPUT);
+        for (int size = 1; size <= INPUT.length(); size += 7) {
+            FlowProcessor processor = new FlowProcessor(config(),
+                    StandardCharsets.UTF_8, 16);
+            Collector collector = new Collector();
+            processor.subscribe(collector);
+            new Pieces(INPUT, size).subscribe(processor);
+            assertTrue(collector._complete);
+            assertNull(collector._error);
+            assertEquals(expected, collector._text.toString());
+        }
+    }
+
+    @Test
+    public void testDemand() {
+        FlowProcessor processor = new FlowProcessor(config(),
+                StandardCharsets.UTF_8, 8);
+        Collector collector = new Collector();
+        collector._paused = true;
+        Pieces pieces = new Pieces(INPUT, 40);
+        pieces.subscribe(processor);
+        assertEquals(0, pieces._requested);
+        processor.subscribe(collector);
+        assertEquals(1, collector._received);
+        assertEquals(1, pieces._requested);
+        collector._paused = false;
+        collector._subscription.request(1);
+        assertTrue(collector._complete);
+        assertEquals(expected(INPUT), collector._text.toString());
+    }
+
+    @Test
+    public void testErrors() {
+        FlowProcessor processor = new FlowProcessor(config(),
+                StandardCharsets.UTF_8);
+        Collector collector = new Collector();
+        processor.subscribe(collector);
+        Pieces pieces = new Pieces("* B Beta III IV AAA\nHELLO\n"
+                + "* B Beta V IV AAA\nWORLD\nMORE\n", 10);
+        pieces.subscribe(processor);
+        assertTrue(collector._error instanceof EnigmaException);
+        assertTrue(pieces._cancelled);
+        assertFalse(collector._complete);
+        Collector second = new Collector();
+        processor.subscribe(second);
+        assertTrue(second._error instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testUpstreamErrorWithoutDemand() {
+        FlowProcessor processor = new FlowProcessor(config(),
+                StandardCharsets.UTF_8, 8);
+        Collector collector = new Collector();
+        collector._paused = true;
+        processor.subscribe(collector);
+        processor.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        processor.onNext(ByteBuffer.wrap(
+                INPUT.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, collector._received);
+        IllegalStateException failure = new IllegalStateException();
+        processor.onError(failure);
+        assertSame(failure, collector._error);
+        assertEquals(1, collector._received);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullItem() {
+        new FlowProcessor(config(), StandardCharsets.UTF_8).onNext(null);
+    }
+}
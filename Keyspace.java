@@ -0,0 +1,278 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static enigma.EnigmaException.*;
+
+/** The rotor keys of a machine, for one rotor order: the settings of the
+ *  rotors other than the reflector and the rings of some of the fastest
+ *  of them, every ring not enumerated being 0.
+ *
+ *  Keys are visited in reflected Gray-code order, counting the key as a
+ *  number whose lowest digit is the setting of the fast rotor, followed
+ *  by the settings of the rotors to its left and then by the enumerated
+ *  rings, fastest first.  Consecutive keys differ in just one rotor's
+ *  setting or ring, by one position up or down, so a search that keeps
+ *  tables derived from the key need update only those that depend on that
+ *  rotor.  The keys have ranks from 0 to size() - 1, and the key space may
+ *  be divided into disjoint ranges of ranks, each walked by its own
+ *  cursor, for parallel searches.  The keyspace counts the keys its
+ *  cursors visit and reports their rate.
+ *  @author Vishal Bansal
+ */
+final class Keyspace {
+
+    /** Number of keys a cursor visits between updates of the count of
+     *  keys visited. */
+    private static final int BATCH = 1 << 10;
+
+    /** The keys of ROTORS rotors over an alphabet of RADIX characters (not
+     *  counting the reflector), enumerating the rings of the RINGS fastest
+     *  of them as well as all their settings. */
+    Keyspace(int radix, int rotors, int rings) {
+        if (radix < 2 || rotors < 1 || rings < 0 || rings > rotors) {
+            throw error("bad key space");
+        }
+        _radix = radix;
+        _rotors = rotors;
+        _digits = rotors + rings;
+        _place = new long[_digits + 1];
+        _place[0] = 1;
+        for (int i = 1; i <= _digits; i++) {
+            if (_place[i - 1] > Long.MAX_VALUE / radix) {
+                throw error("key space too large");
+            }
+            _place[i] = _place[i - 1] * radix;
+        }
+    }
+
+    /** The keys of the rotors of MACHINE, enumerating the rings of the
+     *  RINGS fastest as well as all settings. */
+    Keyspace(Machine machine, int rings) {
+        this(machine.alphabet().size(), machine.numRotors() - 1, rings);
+    }
+
+    /** Return the number of keys. */
+    long size() {
+        return _place[_digits];
+    }
+
+    /** Return the number of rotors whose settings are enumerated. */
+    int rotors() {
+        return _rotors;
+    }
+
+    /** Return a cursor visiting the keys with ranks FROM to TO - 1. */
+    Cursor cursor(long from, long to) {
+        if (from < 0 || from > to || to > size()) {
+            throw error("bad key range");
+        }
+        return new Cursor(from, to);
+    }
+
+    /** Return PARTS cursors that together visit each key once, in ranges
+     *  of nearly equal size, in order of rank.  Ranges may be empty if
+     *  there are more PARTS than keys. */
+    List<Cursor> split(int parts) {
+        if (parts < 1) {
+            throw error("cannot split keys into %d parts", parts);
+        }
+        List<Cursor> result = new ArrayList<>();
+        long size = size();
+        for (int p = 0; p < parts; p++) {
+            result.add(cursor(size / parts * p + Math.min(p, size % parts),
+                    size / parts * (p + 1) + Math.min(p + 1, size % parts)));
+        }
+        return result;
+    }
+
+    /** Return the number of keys visited by my cursors. */
+    long visited() {
+        return _visited.sum();
+    }
+
+    /** Return the rate at which my cursors have visited keys, in keys per
+     *  second, from the first key visited to the last. */
+    double keysPerSecond() {
+        long first = _first.get();
+        long elapsed = _last.get() - first;
+        if (first == 0 || elapsed <= 0) {
+            return 0;
+        }
+        return visited() * 1e9 / elapsed;
+    }
+
+    /** Note that a cursor has started. */
+    private void start() {
+        _first.compareAndSet(0, System.nanoTime());
+    }
+
+    /** Add COUNT to the number of keys visited. */
+    private void count(int count) {
+        _visited.add(count);
+        _last.accumulateAndGet(System.nanoTime(), Math::max);
+        Metrics.get().keysTried(count);
+    }
+
+    /** A walk through a range of keys.  A cursor is not positioned at any
+     *  key until next() is first called. */
+    final class Cursor {
+
+        /** A cursor visiting the keys of rank FROM to TO - 1. */
+        private Cursor(long from, long to) {
+            _from = from;
+            _to = to;
+            _rank = from - 1;
+            _counter = new int[_digits];
+            _key = new int[_digits];
+            _odd = new boolean[_digits];
+        }
+
+        /** Move to the next key of my range, returning false if there is
+         *  none. */
+        boolean next() {
+            if (_rank + 1 >= _to) {
+                flush();
+                return false;
+            }
+            _rank += 1;
+            if (_rank == _from) {
+                start();
+                unrank();
+            } else {
+                int i = 0;
+                while (_counter[i] == _radix - 1) {
+                    _counter[i] = 0;
+                    _odd[i] = !_odd[i];
+                    i += 1;
+                }
+                _counter[i] += 1;
+                _changed = i;
+                _delta = _odd[i] ? -1 : 1;
+                _key[i] += _delta;
+            }
+            _pending += 1;
+            if (_pending == BATCH) {
+                flush();
+            }
+            return true;
+        }
+
+        /** Set the digits of the key of rank _rank from scratch. */
+        private void unrank() {
+            for (int i = 0; i < _digits; i++) {
+                long higher = _rank / _place[i + 1];
+                _counter[i] = (int) (_rank / _place[i] % _radix);
+                _odd[i] = (higher & 1) == 1;
+                _key[i] = _odd[i] ? _radix - 1 - _counter[i] : _counter[i];
+            }
+            _changed = -1;
+            _delta = 0;
+        }
+
+        /** Report the keys visited since the last report. */
+        private void flush() {
+            if (_pending > 0) {
+                count(_pending);
+                _pending = 0;
+            }
+        }
+
+        /** Return the rank of the current key. */
+        long rank() {
+            return _rank;
+        }
+
+        /** Return the setting of rotor SLOT, 1 <= SLOT <= rotors(), in the
+         *  current key. */
+        int setting(int slot) {
+            return _key[_rotors - slot];
+        }
+
+        /** Return the ring of rotor SLOT, 1 <= SLOT <= rotors(), in the
+         *  current key. */
+        int ring(int slot) {
+            int i = 2 * _rotors - slot;
+            return i < _digits ? _key[i] : 0;
+        }
+
+        /** Return the slot of the rotor whose setting or ring changed in
+         *  the move to the current key, or -1 if the current key is the
+         *  first. */
+        int changedSlot() {
+            if (_changed == -1) {
+                return -1;
+            }
+            return _changed < _rotors ? _rotors - _changed
+                : 2 * _rotors - _changed;
+        }
+
+        /** Return true iff the change to the current key was to a ring. */
+        boolean changedRing() {
+            return _changed >= _rotors;
+        }
+
+        /** Return the amount, 1 or -1, by which the setting or ring of
+         *  changedSlot() changed, or 0 if the current key is the first. */
+        int delta() {
+            return _delta;
+        }
+
+        /** Set the rotors of MACHINE, which must have rotors() + 1 slots
+         *  filled, to the current key. */
+        void apply(Machine machine) {
+            for (int slot = 1; slot <= _rotors; slot++) {
+                Rotor rotor = machine.getRotor(slot);
+                rotor.setRing(ring(slot));
+                rotor.set(setting(slot));
+            }
+        }
+
+        /** Copy the settings of the current key into SETTINGS, indexed by
+         *  slot - 1. */
+        void settings(int[] settings) {
+            for (int slot = 1; slot <= _rotors; slot++) {
+                settings[slot - 1] = setting(slot);
+            }
+        }
+
+        /** First rank visited. */
+        private final long _from;
+        /** Rank just past the last visited. */
+        private final long _to;
+        /** Rank of the current key. */
+        private long _rank;
+        /** Digits of _rank, lowest first. */
+        private final int[] _counter;
+        /** Digits of the current key, lowest first. */
+        private final int[] _key;
+        /** _odd[I] is true iff the number given by the digits of _rank
+         *  above the I-th is odd, so that digit I of the key runs
+         *  downwards. */
+        private final boolean[] _odd;
+        /** Digit changed in the last move, or -1. */
+        private int _changed = -1;
+        /** Change to that digit. */
+        private int _delta;
+        /** Keys visited and not yet counted. */
+        private int _pending;
+    }
+
+    /** Number of characters in the alphabet. */
+    private final int _radix;
+    /** Number of rotors, not counting the reflector. */
+    private final int _rotors;
+    /** Number of digits in a key. */
+    private final int _digits;
+    /** _place[I] is _radix to the power I. */
+    private final long[] _place;
+    /** Number of keys visited and counted. */
+    private final LongAdder _visited = new LongAdder();
+    /** Times at which a cursor first started and keys were last
+     *  counted, or 0. */
+    private final AtomicLong _first = new AtomicLong(),
+        _last = new AtomicLong();
+}
@@ -0,0 +1,134 @@
+package enigma;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Keyspace class.
+ *  @author Vishal Bansal
+ */
+public class KeyspaceTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return the current key of CURSOR over ROTORS rotors as a string
+     *  of settings followed by rings. */
+    private String key(Keyspace.Cursor cursor, int rotors) {
+        StringBuilder result = new StringBuilder();
+        for (int slot = 1; slot <= rotors; slot++) {
+            result.append((char) ('A' + cursor.setting(slot)));
+        }
+        result.append(' ');
+        for (int slot = 1; slot <= rotors; slot++) {
+            result.append((char) ('A' + cursor.ring(slot)));
+        }
+        return result.toString();
+    }
+
+    /** Check that the keys visited by CURSOR over ROTORS rotors differ
+     *  from PREVIOUS (null if none) in exactly the way it reports, and
+     *  return the current key. */
+    private String checkStep(Keyspace.Cursor cursor, int rotors,
+                             String previous) {
+        String key = key(cursor, rotors);
+        if (previous == null) {
+            return key;
+        }
+        int slot = cursor.changedSlot();
+        int posn = cursor.changedRing() ? rotors + slot : slot - 1;
+        for (int i = 0; i < key.length(); i++) {
+            if (i == posn) {
+                assertEquals(cursor.delta(),
+                        key.charAt(i) - previous.charAt(i));
+            } else {
+                assertEquals(previous.charAt(i), key.charAt(i));
+            }
+        }
+        return key;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testGrayOrder() {
+        Keyspace keys = new Keyspace(5, 3, 1);
+        assertEquals(625, keys.size());
+        Keyspace.Cursor cursor = keys.cursor(0, keys.size());
+        Set<String> seen = new HashSet<>();
+        String previous = null;
+        for (long rank = 0; rank < keys.size(); rank++) {
+            assertTrue(cursor.next());
+            assertEquals(rank, cursor.rank());
+            previous = checkStep(cursor, 3, previous);
+            assertTrue(seen.add(previous));
+        }
+        assertFalse(cursor.next());
+        assertEquals(625, keys.visited());
+    }
+
+    @Test
+    public void testFirstKeys() {
+        Keyspace.Cursor cursor = new Keyspace(3, 2, 0).cursor(0, 9);
+        StringBuilder order = new StringBuilder();
+        while (cursor.next()) {
+            order.append(key(cursor, 2), 0, 2).append(' ');
+        }
+        assertEquals("AA AB AC BC BB BA CA CB CC ", order.toString());
+    }
+
+    @Test
+    public void testSplit() {
+        Keyspace keys = new Keyspace(26, 3, 0);
+        Keyspace.Cursor whole = keys.cursor(0, keys.size());
+        List<Keyspace.Cursor> parts = keys.split(7);
+        assertEquals(7, parts.size());
+        for (Keyspace.Cursor part : parts) {
+            while (part.next()) {
+                assertTrue(whole.next());
+                assertEquals(whole.rank(), part.rank());
+                assertEquals(key(whole, 3), key(part, 3));
+            }
+        }
+        assertFalse(whole.next());
+        assertEquals(2 * keys.size(), keys.visited());
+        assertTrue(keys.keysPerSecond() > 0);
+    }
+
+    @Test
+    public void testApply() {
+        Machine mach = new Machine(TestUtils.UPPER, 4, 2, List.of(
+                new Reflector("B", new Permutation(
+                        TestUtils.NAVALA.get("B"), TestUtils.UPPER)),
+                new FixedRotor("Beta", new Permutation(
+                        TestUtils.NAVALA.get("Beta"), TestUtils.UPPER)),
+                new MovingRotor("I", new Permutation(
+                        TestUtils.NAVALA.get("I"), TestUtils.UPPER), "Q"),
+                new MovingRotor("II", new Permutation(
+                        TestUtils.NAVALA.get("II"), TestUtils.UPPER), "E")));
+        mach.insertRotors(new String[] { "B", "Beta", "I", "II" });
+        Keyspace keys = new Keyspace(mach, 2);
+        Keyspace.Cursor cursor = keys.cursor(12345, 12346);
+        assertTrue(cursor.next());
+        cursor.apply(mach);
+        for (int slot = 1; slot <= 3; slot++) {
+            assertEquals(cursor.setting(slot),
+                    mach.getRotor(slot).setting());
+            assertEquals(cursor.ring(slot), mach.getRotor(slot).ring());
+        }
+        assertEquals(0, cursor.ring(1));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadRange() {
+        new Keyspace(26, 3, 0).cursor(5, 4);
+    }
+}
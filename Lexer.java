@@ -0,0 +1,155 @@
+package enigma;
+
+import java.util.NoSuchElementException;
+
+/** Splits text into tokens separated by whitespace, for reading
+ *  configuration files and settings lines.  The current token is a view
+ *  of the text, not a copy: as a CharSequence, a lexer is its current
+ *  token, and moving from token to token allocates nothing.  As with
+ *  Scanner, asking for a token that is not there throws a
+ *  NoSuchElementException.
+ *  @author Vishal Bansal
+ */
+final class Lexer implements CharSequence {
+
+    /** A lexer for TEXT, positioned before its first token. */
+    Lexer(CharSequence text) {
+        _text = text;
+    }
+
+    /** Return true iff there is another token. */
+    boolean hasNext() {
+        skipWhitespace();
+        return _posn < _text.length();
+    }
+
+    /** Make the next token current and return me. */
+    Lexer next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        _start = _posn;
+        while (_posn < _text.length()
+               && !Character.isWhitespace(_text.charAt(_posn))) {
+            _posn += 1;
+        }
+        _end = _posn;
+        return this;
+    }
+
+    /** Make the next token current and return its value as a
+     *  non-negative decimal integer. */
+    int nextInt() {
+        next();
+        int result = 0;
+        for (int i = _start; i < _end; i++) {
+            char c = _text.charAt(i);
+            if (c < '0' || c > '9' || result > (Integer.MAX_VALUE - 9) / 10) {
+                throw new NoSuchElementException();
+            }
+            result = result * 10 + c - '0';
+        }
+        return result;
+    }
+
+    /** Skip the rest of the current line, including its line
+     *  terminator. */
+    void skipLine() {
+        while (_posn < _text.length() && _text.charAt(_posn) != '\n'
+               && _text.charAt(_posn) != '\r') {
+            _posn += 1;
+        }
+        if (_posn < _text.length() && _text.charAt(_posn) == '\r') {
+            _posn += 1;
+        }
+        if (_posn < _text.length() && _text.charAt(_posn) == '\n') {
+            _posn += 1;
+        }
+    }
+
+    /** Return true iff there is another token and it contains C. */
+    boolean nextContains(char c) {
+        skipWhitespace();
+        for (int i = _posn; i < _text.length(); i++) {
+            char d = _text.charAt(i);
+            if (d == c) {
+                return true;
+            } else if (Character.isWhitespace(d)) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /** Return the position in my text of the start of the current
+     *  token. */
+    int start() {
+        return _start;
+    }
+
+    /** Return the position in my text just past the current token. */
+    int end() {
+        return _end;
+    }
+
+    /** Continue from position POSN of my text, so that the next token is
+     *  the one starting at or after POSN. */
+    void rewind(int posn) {
+        _posn = posn;
+    }
+
+    /** Return my text. */
+    CharSequence text() {
+        return _text;
+    }
+
+    /** Return true iff the current token contains C. */
+    boolean contains(char c) {
+        for (int i = _start; i < _end; i++) {
+            if (_text.charAt(i) == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int length() {
+        return _end - _start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException();
+        }
+        return _text.charAt(_start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return _text.subSequence(_start + start, _start + end);
+    }
+
+    @Override
+    public String toString() {
+        return _text.subSequence(_start, _end).toString();
+    }
+
+    /** Advance _posn past any whitespace. */
+    private void skipWhitespace() {
+        while (_posn < _text.length()
+               && Character.isWhitespace(_text.charAt(_posn))) {
+            _posn += 1;
+        }
+    }
+
+    /** Text being split. */
+    private final CharSequence _text;
+    /** Position of the next character to be examined. */
+    private int _posn;
+    /** Position of the current token. */
+    private int _start;
+    /** Position just past the current token. */
+    private int _end;
+}
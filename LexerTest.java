@@ -0,0 +1,61 @@
+package enigma;
+
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Lexer class.
+ *  @author Vishal Bansal
+ */
+public class LexerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testTokens() {
+        Lexer lex = new Lexer("  ABC\t 5 3\r\n(AB) (C)\n");
+        assertTrue(lex.hasNext());
+        assertEquals("ABC", lex.next().toString());
+        assertEquals(3, lex.length());
+        assertEquals('B', lex.charAt(1));
+        assertEquals(5, lex.nextInt());
+        assertEquals(3, lex.nextInt());
+        assertTrue(lex.nextContains('('));
+        assertEquals("(AB)", lex.next().toString());
+        assertTrue(lex.contains('A'));
+        assertFalse(lex.contains('C'));
+        int posn = lex.start();
+        assertEquals("(C)", lex.next().toString());
+        assertFalse(lex.hasNext());
+        lex.rewind(posn);
+        assertEquals("(AB)", lex.next().toString());
+    }
+
+    @Test
+    public void testSkipLine() {
+        Lexer lex = new Lexer("* B I\r\nHELLO WORLD\nX");
+        lex.next();
+        lex.skipLine();
+        assertEquals("HELLO", lex.next().toString());
+        lex.skipLine();
+        assertEquals("X", lex.next().toString());
+        lex.skipLine();
+        assertFalse(lex.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testMissingToken() {
+        Lexer lex = new Lexer(" \n ");
+        lex.next();
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testBadInt() {
+        new Lexer("12x").nextInt();
+    }
+}
@@ -1,6 +1,15 @@
 package enigma;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static enigma.EnigmaException.*;
 
 
 /** Class that represents a complete enigma machine.
@@ -8,27 +17,78 @@ import java.util.Collection;
  */
 class Machine {
 
+    /** Fewest characters per chunk in convertParallel. */
+    private static final int PARALLEL_CHUNK = 1 << 16;
+
     /** Alphabet. */
     private final Alphabet _alphabet;
     /** Rotors. */
     private Rotor [] _rotors;
     /** Pawls. */
     private int _pawls;
-    /** AllRotors. */
-    private Collection<Rotor> _allRotors;
+    /** The available rotors, shared by my forks. */
+    private final RotorRegistry _registry;
+    /** In a fork, an open-addressed hash table of the rotors I use for
+     *  rotors of _registry, one for each rotor I have used, whose size is
+     *  a power of two.  Null in a machine that uses the registry's rotors
+     *  themselves. */
+    private Rotor[] _own;
+    /** _ownIndices[I] is the registry number of the rotor _own[I]. */
+    private int[] _ownIndices;
+    /** Number of rotors in _own. */
+    private int _ownCount;
+    /** _slots[I] is the registry number of the rotor in slot I, or -1. */
+    private final int[] _slots;
     /** Plugboard. */
     private Permutation _plugboard;
-    /** String. */
-    private String _rings = "";
+    /** Ring settings applied by setRotors, not counting the reflector. */
+    private final int[] _rings;
+    /** Receives each stage of my conversions. */
+    private Tracer _tracer = Tracer.NONE;
+    /** Steps of rotors other than the fast rotor not yet reported to
+     *  Metrics. */
+    private long _extraSteps;
     /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
      *  and 0 <= PAWLS < NUMROTORS pawls.  ALLROTORS contains all the
      *  available rotors. */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) {
+        this(alpha, numRotors, pawls, new RotorRegistry(allRotors));
+    }
+
+    /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
+     *  and 0 <= PAWLS < NUMROTORS pawls, whose available rotors are those
+     *  of REGISTRY. */
+    Machine(Alphabet alpha, int numRotors, int pawls,
+            RotorRegistry registry) {
         _alphabet = alpha;
         _rotors = new Rotor[numRotors];
         _pawls = pawls;
-        _allRotors = allRotors;
+        _registry = registry;
+        _own = null;
+        _slots = new int[numRotors];
+        Arrays.fill(_slots, -1);
+        _rings = new int[numRotors - 1];
+    }
+
+    /** A new machine with the configuration of ORIGINAL, in the same
+     *  state, whose rotors change independently of ORIGINAL's. */
+    private Machine(Machine original) {
+        _alphabet = original._alphabet;
+        _rotors = new Rotor[original._rotors.length];
+        _pawls = original._pawls;
+        _registry = original._registry;
+        _own = new Rotor[Integer.highestOneBit(_rotors.length) << 2];
+        _ownIndices = new int[_own.length];
+        _slots = original._slots.clone();
+        for (int i = 0; i < _rotors.length; i++) {
+            if (_slots[i] != -1) {
+                _rotors[i] = original._rotors[i].copy();
+                own(_slots[i], _rotors[i]);
+            }
+        }
+        _rings = original._rings.clone();
+        _plugboard = original._plugboard;
     }
 
     /** Return the number of rotor slots I have. */
@@ -48,48 +108,48 @@ class Machine {
         return _rotors[k];
     }
 
+    /** Return my alphabet. */
     Alphabet alphabet() {
         return _alphabet;
     }
 
+    /** Return all the rotors available to me, building any that my
+     *  registry has not built. */
+    Collection<Rotor> allRotors() {
+        return _registry.all();
+    }
+
+    /** Return the registry of the rotors available to me. */
+    RotorRegistry registry() {
+        return _registry;
+    }
+
+    /** Return my ring settings. */
     String getRings() {
-        return _rings;
-    }
-
-    void setRings(String rings) {
-        _rings = rings;
-    }
-    void reverseNotch() {
-        for (int i = 1; i < _rotors.length; i++) {
-            String notches = "";
-            String curr = _rotors[i].notches();
-            for (int j = 0; j < curr.length(); j++) {
-                int original = _rotors[i].alphabet().toInt(
-                        _rotors[i].notches().charAt(j));
-                int subtract = _rotors[i].alphabet().toInt(
-                        _rings.charAt(i - 1));
-                notches += _rotors[i].alphabet().toChar(
-                        _rotors[i].permutation().wrap(original + subtract));
-            }
-            if (curr != "") {
-                _rotors[i].setNotches(notches);
-            }
+        StringBuilder result = new StringBuilder();
+        for (int ring : _rings) {
+            result.append(_alphabet.toChar(ring));
         }
+        return result.toString();
     }
-    void setNotch() {
-        for (int i = 1; i < _rotors.length; i++) {
-            String notches = "";
-            String curr = _rotors[i].notches();
-            for (int j = 0; j < curr.length(); j++) {
-                int original = _rotors[i].alphabet().toInt(
-                        _rotors[i].notches().charAt(j));
-                int subtract = _rotors[i].alphabet().
-                        toInt(_rings.charAt(i - 1));
-                notches += _rotors[i].alphabet().toChar(
-                        _rotors[i].permutation().wrap(original - subtract));
-            }
-            if (curr != "") {
-                _rotors[i].setNotches(notches);
+
+    /** Set the ring settings of my rotors to RINGS, a string of
+     *  numRotors()-1 characters in my alphabet, or the empty string for
+     *  all rings at their 0 setting.  The rings take effect at the next
+     *  call to setRotors. */
+    void setRings(CharSequence rings) {
+        if (rings.length() == 0) {
+            Arrays.fill(_rings, 0);
+            return;
+        }
+        if (rings.length() != _rings.length) {
+            throw error("wrong number of ring settings");
+        }
+        for (int i = 0; i < _rings.length; i++) {
+            _rings[i] = _alphabet.toInt(rings.charAt(i));
+            if (_rings[i] == -1) {
+                throw error("ring setting %c not in alphabet",
+                        rings.charAt(i));
             }
         }
     }
@@ -99,38 +159,86 @@ class Machine {
      *  Initially, all rotors are set at their 0 setting. */
     void insertRotors(String[] rotors) {
         for (int i = 0; i < rotors.length; i++) {
-            for (Rotor rotor: _allRotors) {
-                if (rotor.name().equals(rotors[i])) {
-                    _rotors[i] = rotor;
+            int k = rotorIndex(rotors[i]);
+            if (k != -1) {
+                insertRotor(i, k);
+            }
+        }
+    }
+
+    /** Put the available rotor with index K (see rotorIndex) in slot
+     *  SLOT. */
+    void insertRotor(int slot, int k) {
+        _rotors[slot] = rotor(k);
+        _slots[slot] = k;
+    }
+
+    /** Return the index among my available rotors of the one named NAME,
+     *  or -1 if there is none.  Allocates nothing. */
+    int rotorIndex(CharSequence name) {
+        return _registry.indexOf(name);
+    }
+
+    /** Return my rotor for rotor #K of my registry, making it if need
+     *  be. */
+    private Rotor rotor(int k) {
+        if (_own == null) {
+            return _registry.get(k);
+        }
+        int mask = _own.length - 1;
+        for (int i = k & mask; _own[i] != null; i = (i + 1) & mask) {
+            if (_ownIndices[i] == k) {
+                return _own[i];
+            }
+        }
+        Rotor result = _registry.get(k).copy();
+        own(k, result);
+        return result;
+    }
+
+    /** Add ROTOR to _own as my rotor for rotor #K of my registry, which I
+     *  do not yet have, doubling the size of _own if it is half full. */
+    private void own(int k, Rotor rotor) {
+        if (2 * (_ownCount + 1) > _own.length) {
+            Rotor[] rotors = _own;
+            int[] indices = _ownIndices;
+            _own = new Rotor[2 * rotors.length];
+            _ownIndices = new int[_own.length];
+            _ownCount = 0;
+            for (int i = 0; i < rotors.length; i++) {
+                if (rotors[i] != null) {
+                    own(indices[i], rotors[i]);
                 }
             }
         }
+        int mask = _own.length - 1;
+        int i = k & mask;
+        while (_own[i] != null) {
+            i = (i + 1) & mask;
+        }
+        _own[i] = rotor;
+        _ownIndices[i] = k;
+        _ownCount += 1;
     }
 
     /** Set my rotors according to SETTING, which must be a string of
      *  numRotors()-1 characters in my alphabet. The first letter refers
      *  to the leftmost rotor setting (not counting the reflector).  */
-    void setRotors(String setting) {
-        if (setting.length() == 1) {
-            int subtract = 0;
-            if (_rings != "") {
-                subtract = _alphabet.toInt(_rings.charAt(0));
-            }
-            int current = _rotors[1].permutation().wrap(_alphabet.toInt(
-                    setting.charAt(0)) - subtract);
-            _rotors[1].set(current);
-        } else {
-            for (int i = 1; i < _rotors.length; i++) {
-                int subtract = 0;
-                if (_rings != "") {
-                    subtract = _alphabet.toInt(_rings.charAt(i - 1));
-                }
-                int current = _rotors[i].permutation().wrap(_alphabet.toInt(
-                        setting.charAt(i - 1)) - subtract);
-                _rotors[i].set(current);
+    void setRotors(CharSequence setting) {
+        int last = setting.length() == 1 ? 1 : _rotors.length - 1;
+        if (setting.length() < last) {
+            throw error("wrong number of rotor settings");
+        }
+        for (int i = 1; i <= last; i++) {
+            int posn = _alphabet.toInt(setting.charAt(i - 1));
+            if (posn == -1) {
+                throw error("setting %c not in alphabet",
+                        setting.charAt(i - 1));
             }
+            _rotors[i].setRing(_rings[i - 1]);
+            _rotors[i].set(posn);
         }
-
+        Metrics.get().settingsChanged();
     }
 
     /** Return the current plugboard's permutation. */
@@ -138,6 +246,12 @@ class Machine {
         return _plugboard;
     }
 
+    /** Report my conversions to TRACER from now on.  Tracer.NONE turns
+     *  tracing off. */
+    void setTracer(Tracer tracer) {
+        _tracer = tracer;
+    }
+
     /** Set the plugboard to PLUGBOARD. */
     void setPlugboard(Permutation plugboard) {
         _plugboard = plugboard;
@@ -148,56 +262,178 @@ class Machine {
      *  the machine. */
     int convert(int c) {
         advanceRotors();
-        if (Main.verbose()) {
-            System.err.printf("[");
-            for (int r = 1; r < numRotors(); r += 1) {
-                System.err.printf("%c",
-                        alphabet().toChar(getRotor(r).setting()));
-            }
-            System.err.printf("] %c -> ", alphabet().toChar(c));
-        }
+        _tracer.keypress(this, c);
         c = plugboard().permute(c);
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(c));
-        }
+        _tracer.hop(c);
         c = applyRotors(c);
         c = plugboard().permute(c);
-        if (Main.verbose()) {
-            System.err.printf("%c%n", alphabet().toChar(c));
-        }
+        _tracer.result(c);
         return c;
     }
 
-    /** Advance all rotors to their next position. */
+    /** Advance all rotors to their next position.  The fast rotor always
+     *  moves; any other rotor with a pawl moves if the rotor to its right
+     *  is at a notch, and a rotor at a notch also moves if the rotor to its
+     *  left has a pawl (double stepping).  Each decision depends only on
+     *  rotors not yet moved, so they are made in one pass from left to
+     *  right.  Allocates nothing. */
     private void advanceRotors() {
-        Boolean [] turned = new Boolean [_rotors.length];
-        for (int i = 0; i < turned.length; i++) {
-            turned[i] = false;
-        }
-        turned[_rotors.length - 1] = true;
-        for (int i = _rotors.length - 2; i > 0; i--) {
-            if (_rotors[i + 1].atNotch() && _rotors[i].notches() != "") {
-                turned[i] = true;
-                if (!(turned[i + 1])) {
-                    turned[i + 1] = true;
-                }
+        Rotor[] rotors = _rotors;
+        int last = rotors.length - 1;
+        boolean pawlOnLeft = false;
+        for (int i = 1; i < last; i++) {
+            Rotor rotor = rotors[i];
+            boolean pawl = rotor.rotates();
+            if ((pawl && rotors[i + 1].atNotch())
+                || (pawlOnLeft && rotor.atNotch())) {
+                rotor.advance();
+                _extraSteps += 1;
             }
+            pawlOnLeft = pawl;
+        }
+        rotors[last].advance();
+    }
+
+    /** Advance my rotors to their settings after STEPS more keypresses,
+     *  STEPS >= 0, without converting anything.  Takes time independent of
+     *  STEPS unless a rotor that double steps has adjacent notches. */
+    void seek(long steps) {
+        if (steps < 0) {
+            throw error("cannot seek backwards");
+        }
+        if (steps == 0) {
+            return;
         }
-        for (int i = 0; i < turned.length; i++) {
-            if (turned[i]) {
-                _rotors[i].advance();
+        advanceRotors();
+        if (Odometer.canJump(_rotors)) {
+            Odometer.jump(_rotors, steps - 1);
+        } else {
+            for (long k = 1; k < steps; k++) {
+                advanceRotors();
             }
         }
     }
 
+    /** Return a machine with my configuration and in my current state
+     *  that converts, and may be set up, independently of me.  It shares
+     *  my rotors' tables and copies the rotors in my slots, and copies
+     *  any other rotor only when it is first inserted, so forking takes
+     *  time proportional to the number of slots, however many rotors are
+     *  available.  The fork is not traced. */
+    Machine fork() {
+        return new Machine(this);
+    }
+
+    /** Return my complete state: the rotors in my slots, their settings
+     *  and rings, and my plugboard.  It may be restored to me or to any
+     *  of my forks. */
+    State snapshot() {
+        int[] settings = new int[_rotors.length];
+        int[] rings = new int[_rotors.length];
+        for (int i = 0; i < _rotors.length; i++) {
+            if (_rotors[i] != null) {
+                settings[i] = _rotors[i].setting();
+                rings[i] = _rotors[i].ring();
+            }
+        }
+        return new State(_slots.clone(), settings, rings, _rings.clone(),
+                _plugboard);
+    }
+
+    /** Return me to STATE, taken by snapshot() from me or from a machine
+     *  related to me by forking.  Takes time proportional to the number
+     *  of slots, and allocates nothing once I have used each rotor. */
+    void restore(State state) {
+        for (int i = 0; i < _rotors.length; i++) {
+            int k = state._slots[i];
+            _slots[i] = k;
+            if (k == -1) {
+                _rotors[i] = null;
+            } else {
+                _rotors[i] = rotor(k);
+                _rotors[i].setRing(state._rings[i]);
+                _rotors[i].set(state._settings[i]);
+            }
+        }
+        System.arraycopy(state._pending, 0, _rings, 0, _rings.length);
+        _plugboard = state._plugboard;
+        Metrics.get().settingsChanged();
+    }
+
+    /** Report to Metrics that I have converted CHARS characters since
+     *  my last report, with the rotor steps they took.  The methods that
+     *  convert many characters report them; callers of convert(int) do
+     *  so themselves, since even counting in a field costs that method a
+     *  noticeable fraction of its speed. */
+    void reportConverted(long chars) {
+        Metrics.get().converted(chars, chars + _extraSteps);
+        _extraSteps = 0;
+    }
+
+    /** The complete state of a machine, as returned by snapshot(). */
+    static final class State {
+
+        /** A state with the rotors at catalog indices SLOTS (-1 for an
+         *  empty slot), at settings SETTINGS and rings RINGS, with the
+         *  ring settings PENDING for the next setRotors, and the plugboard
+         *  PLUGBOARD. */
+        private State(int[] slots, int[] settings, int[] rings,
+                      int[] pending, Permutation plugboard) {
+            _slots = slots;
+            _settings = settings;
+            _rings = rings;
+            _pending = pending;
+            _plugboard = plugboard;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof State)) {
+                return false;
+            }
+            State other = (State) obj;
+            return Arrays.equals(_slots, other._slots)
+                && Arrays.equals(_settings, other._settings)
+                && Arrays.equals(_rings, other._rings)
+                && Arrays.equals(_pending, other._pending)
+                && _plugboard == other._plugboard;
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(_settings) * 31
+                + Arrays.hashCode(_slots);
+        }
+
+        /** Catalog indices of the rotors in each slot. */
+        private final int[] _slots;
+        /** Rotor settings by slot. */
+        private final int[] _settings;
+        /** Ring settings by slot. */
+        private final int[] _rings;
+        /** Ring settings as last given to setRings. */
+        private final int[] _pending;
+        /** Plugboard. */
+        private final Permutation _plugboard;
+    }
+
+    /** Return the result of passing the character C (as an index in the
+     *  range 0..alphabet size - 1) through my rotors in their current
+     *  settings, without the plugboard and without advancing them. */
+    int scramble(int c) {
+        return applyRotors(c);
+    }
+
     /** Return the result of applying the rotors to the character C (as an
      *  index in the range 0..alphabet size - 1). */
 
     private int applyRotors(int c) {
         for (int i = _rotors.length - 1; i >= 0; i--) {
             c = _rotors[i].convertForward(c);
+            _tracer.hop(c);
         } for (int i = 1; i < _rotors.length; i++) {
             c = _rotors[i].convertBackward(c);
+            _tracer.hop(c);
         }
         return c;
     }
@@ -205,21 +441,126 @@ class Machine {
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        String result = "";
-
-        int i = 0;
-        while (i < msg.length()) {
-            char curr = msg.charAt(i);
-            while (curr == ' ' && i + 1 != msg.length()) {
-                i++;
-                curr = msg.charAt(i);
+        char[] in = msg.toCharArray();
+        char[] out = new char[in.length];
+        return new String(out, 0, convert(in, 0, in.length, out, 0));
+    }
+
+    /** Encode or decode the LEN characters of IN starting at OFF into OUT,
+     *  starting at OUTOFF, updating the state of the rotors accordingly.
+     *  Blanks are skipped.  Returns the number of characters written,
+     *  which is at most LEN. */
+    int convert(char[] in, int off, int len, char[] out, int outOff) {
+        int k = outOff;
+        for (int i = off; i < off + len; i++) {
+            if (in[i] != ' ') {
+                out[k] = convertChar(in[i]);
+                k++;
             }
-            if (curr == ' ' && i + 1 == msg.length()) {
-                return result;
+        }
+        reportConverted(k - outOff);
+        return k - outOff;
+    }
+
+    /** Encode or decode characters from IN into OUT until IN is exhausted
+     *  or OUT is full, updating the state of the rotors accordingly.
+     *  Blanks are skipped.  Returns the number of characters written. */
+    int convert(CharBuffer in, CharBuffer out) {
+        int k = 0;
+        while (in.hasRemaining() && out.hasRemaining()) {
+            char c = in.get();
+            if (c != ' ') {
+                out.put(convertChar(c));
+                k++;
             }
-            result += _alphabet.toChar(convert(_alphabet.toInt(msg.charAt(i))));
-            i++;
         }
-        return result;
+        reportConverted(k);
+        return k;
+    }
+
+    /** Encode or decode single-byte (ISO-8859-1) characters from IN into
+     *  OUT until IN is exhausted or OUT is full, updating the state of the
+     *  rotors accordingly.  Blanks are skipped.  Returns the number of
+     *  bytes written. */
+    int convert(ByteBuffer in, ByteBuffer out) {
+        int k = 0;
+        while (in.hasRemaining() && out.hasRemaining()) {
+            char c = (char) (in.get() & 0xff);
+            if (c != ' ') {
+                char e = convertChar(c);
+                if (e > 0xff) {
+                    throw error("character %c cannot be written as a byte", e);
+                }
+                out.put((byte) e);
+                k++;
+            }
+        }
+        reportConverted(k);
+        return k;
+    }
+
+    /** Returns the encoding/decoding of MSG, as for convert(String), but
+     *  dividing a long message among the threads of the common fork-join
+     *  pool. */
+    String convertParallel(String msg) {
+        char[] in = msg.toCharArray();
+        char[] out = new char[in.length];
+        return new String(out, 0,
+                convertParallel(in, 0, in.length, out, 0));
+    }
+
+    /** Encode or decode the LEN characters of IN starting at OFF into OUT,
+     *  starting at OUTOFF, as for convert(char[], int, int, char[], int).
+     *  A long message is divided into chunks that are converted in
+     *  parallel, each by a copy of me sought to the chunk's starting
+     *  position.  Returns the number of characters written. */
+    int convertParallel(char[] in, int off, int len, char[] out,
+                        int outOff) {
+        int chunks = Math.min(len / PARALLEL_CHUNK,
+                4 * ForkJoinPool.getCommonPoolParallelism());
+        if (chunks < 2) {
+            return convert(in, off, len, out, outOff);
+        }
+        int[] starts = new int[chunks + 1];
+        int[] written = new int[chunks + 1];
+        for (int c = 0; c <= chunks; c++) {
+            starts[c] = off + (int) ((long) len * c / chunks);
+        }
+        for (int c = 0; c < chunks; c++) {
+            int count = 0;
+            for (int i = starts[c]; i < starts[c + 1]; i++) {
+                if (in[i] != ' ') {
+                    if (!_alphabet.contains(in[i])) {
+                        throw error("character %c not in alphabet", in[i]);
+                    }
+                    count++;
+                }
+            }
+            written[c + 1] = written[c] + count;
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int c = 0; c < chunks; c++) {
+            int chunk = c;
+            Machine part = fork();
+            tasks.add(ForkJoinTask.adapt(() -> {
+                part.seek(written[chunk]);
+                part.convert(in, starts[chunk],
+                        starts[chunk + 1] - starts[chunk],
+                        out, outOff + written[chunk]);
+            }));
+        }
+        ForkJoinTask.invokeAll(tasks);
+        seek(written[chunks]);
+        return written[chunks];
+    }
+
+    /** Returns the encoding/decoding of the character C, which must be in
+     *  my alphabet, after first advancing the machine. */
+    private char convertChar(char c) {
+        int index = _alphabet.toInt(c);
+        if (index == -1) {
+            throw error("character %c not in alphabet", c);
+        }
+        return _alphabet.toChar(convert(index));
     }
 }
@@ -1,6 +1,14 @@
 package enigma;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import org.junit.Test;
 import org.junit.Rule;
 import org.junit.rules.Timeout;
@@ -76,4 +84,231 @@ public class MachineTest {
         assertEquals("QVPQSOKOILPUBKJZPISFXDW",
                 mach.convert("FROMHISSHOULDERHIAWATHA"));
     }
+
+    @Test
+    public void testConvertWithRings() {
+        Machine mach = new Machine(AZ, 5, 3, ROTORS.values());
+        mach.insertRotors(ROTORS1);
+        mach.setRings("BCDF");
+        mach.setRotors(SETTING1);
+        mach.setPlugboard(new Permutation("(YF) (HZ)", AZ));
+        String msg = "HELLOWORLDTHISISATESTOFRINGSETTINGSWITHTURNOVER"
+                + "X".repeat(199);
+        String expected = "VYQUYKZBDVEWVDCFZHLISEYDNYOCXCGFYEEMFNAKTPHEDHF"
+                + "AQANGTOFWHKUJZTUURRKUUZJAFBDISYIZINSCBHNSYQECGWZKS"
+                + "HSVKOOOMOGWHJVFPQULMCGMZMMZSQIIJJVOYWHGQLVQUVUYFKP"
+                + "MJFPKSSFTKCYMNGOOPMKBBCCWKEOHSVVWGOPJJQOIVFOQEDQZE"
+                + "VKTSVVPUFZYZQMKORUVZJEAROGUHZDLDNDGSSYPIGECBCPZMQ";
+        assertEquals(expected, mach.convert(msg));
+        assertEquals('A', ROTORS.get("Beta").alphabet().toChar(
+                mach.getRotor(1).setting()));
+    }
+
+    @Test
+    public void testConvertBulk() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        char[] in = "..FROM HIS SHOULDER HIAWATHA..".toCharArray();
+        char[] out = new char[in.length];
+        assertEquals(23, mach.convert(in, 2, in.length - 4, out, 1));
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW", new String(out, 1, 23));
+    }
+
+    @Test
+    public void testConvertBuffers() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        ByteBuffer in = ByteBuffer.wrap("FROM HIS SHOULDER".getBytes(
+                StandardCharsets.US_ASCII));
+        ByteBuffer out = ByteBuffer.allocate(8);
+        assertEquals(8, mach.convert(in, out));
+        assertEquals("QVPQSOKO", new String(out.array(),
+                StandardCharsets.US_ASCII));
+        CharBuffer rest = CharBuffer.allocate(20);
+        mach.convert(StandardCharsets.US_ASCII.decode(in), rest);
+        mach.convert(CharBuffer.wrap(" HIAWATHA"), rest);
+        rest.flip();
+        assertEquals("ILPUBKJZPISFXDW", rest.toString());
+    }
+
+    @Test
+    public void testSeek() {
+        Machine stepped = mach1();
+        stepped.setPlugboard(new Permutation("", AZ));
+        Machine sought = mach1();
+        for (int n : new int[] { 0, 1, 2, 25, 26, 650, 677, 16900, 40000 }) {
+            stepped.setRotors(SETTING1);
+            for (int k = 0; k < n; k += 1) {
+                stepped.convert(0);
+            }
+            String expected = settings(stepped);
+            sought.setRotors(SETTING1);
+            sought.seek(n);
+            assertEquals("after " + n, expected, settings(sought));
+        }
+    }
+
+    @Test
+    public void testConvertParallel() {
+        StringBuilder msg = new StringBuilder();
+        for (int k = 0; k < 400000; k += 1) {
+            msg.append(k % 7 == 0 ? ' ' : (char) ('A' + k * 7 % 26));
+        }
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        String expected = mach.convert(msg.toString());
+        String after = settings(mach);
+        mach.setRotors(SETTING1);
+        assertEquals(expected, mach.convertParallel(msg.toString()));
+        assertEquals(after, settings(mach));
+    }
+
+    @Test
+    public void testSnapshotRestore() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        Machine.State start = mach.snapshot();
+        String expected = mach.convert("FROMHISSHOULDERHIAWATHA");
+        Machine.State end = mach.snapshot();
+        mach.insertRotors(new String[] { "B", "Beta", "I", "IV", "III" });
+        mach.setRings("BCDE");
+        mach.setRotors("QQQQ");
+        mach.setPlugboard(new Permutation("", AZ));
+        mach.restore(start);
+        assertEquals(start, mach.snapshot());
+        assertEquals(expected, mach.convert("FROMHISSHOULDERHIAWATHA"));
+        assertEquals(end, mach.snapshot());
+        assertFalse(start.equals(end));
+    }
+
+    @Test
+    public void testFork() {
+        Machine mach = mach1();
+        mach.setRings("AABC");
+        mach.setRotors(SETTING1);
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        Machine.State start = mach.snapshot();
+        Machine fork = mach.fork();
+        assertEquals(start, fork.snapshot());
+        String expected = fork.convert("FROMHISSHOULDERHIAWATHA");
+        fork.insertRotors(new String[] { "B", "Beta", "I", "IV", "III" });
+        fork.setRotors("QQQQ");
+        assertEquals(start, mach.snapshot());
+        assertEquals(ROTORS.get("III"), mach.getRotor(2));
+        assertNotSame(mach.getRotor(2), fork.getRotor(4));
+        assertEquals(expected, mach.convert("FROMHISSHOULDERHIAWATHA"));
+        fork.restore(start);
+        mach.restore(start);
+        assertEquals(mach.convert("TOHISSHOULDER"),
+                fork.convert("TOHISSHOULDER"));
+    }
+
+    @Test
+    public void testForkManyRotors() {
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(ROTORS.get("B"));
+        for (int k = 0; k < 300; k += 1) {
+            rotors.add(new MovingRotor("R" + k,
+                    new Permutation(TestUtils.NAVALA.get("I"), AZ), "Q"));
+        }
+        Machine mach = new Machine(AZ, 4, 3, rotors);
+        Machine fork = mach.fork();
+        Machine.State[] states = new Machine.State[100];
+        for (int i = 0; i < states.length; i += 1) {
+            fork.insertRotors(new String[] { "B", "R" + (3 * i),
+                "R" + (3 * i + 1), "R" + (3 * i + 2) });
+            fork.setRotors("ABC");
+            fork.setPlugboard(new Permutation("", AZ));
+            states[i] = fork.snapshot();
+        }
+        for (Machine.State state : states) {
+            fork.restore(state);
+            assertEquals(state, fork.snapshot());
+        }
+        assertNull(mach.getRotor(1));
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        before = threads.getThreadAllocatedBytes(id);
+        for (Machine.State state : states) {
+            fork.restore(state);
+        }
+        assertEquals(before, threads.getThreadAllocatedBytes(id));
+    }
+
+    /** Return the current settings of MACH's rotors as a string. */
+    private String settings(Machine mach) {
+        String result = "";
+        for (int r = 1; r < mach.numRotors(); r += 1) {
+            result += AZ.toChar(mach.getRotor(r).setting());
+        }
+        return result;
+    }
+
+    @Test
+    public void testTrace() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        ByteArrayOutputStream trace = new ByteArrayOutputStream();
+        TraceBuffer tracer = new TraceBuffer(AZ, new PrintStream(trace));
+        mach.setTracer(tracer);
+        mach.convert("F");
+        mach.setTracer(Tracer.NONE);
+        mach.convert("R");
+        tracer.close();
+        assertEquals("[AXLF] F -> F -> I -> V -> J -> W -> H -> X -> Z -> J "
+                + "-> H -> Q" + System.lineSeparator(), trace.toString());
+    }
+
+    @Test
+    public void testTraceBufferClose() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("", AZ));
+        String msg = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".repeat(400);
+        for (int round = 0; round < 20; round += 1) {
+            ByteArrayOutputStream trace = new ByteArrayOutputStream();
+            TraceBuffer tracer = new TraceBuffer(AZ, new PrintStream(trace));
+            mach.setTracer(tracer);
+            mach.convert(msg);
+            tracer.close();
+            mach.setTracer(Tracer.NONE);
+            assertEquals(msg.length(), trace.toString()
+                         .split(System.lineSeparator()).length);
+        }
+    }
+
+    @Test
+    public void testMultipleNotches() {
+        String[] notches = { "", "", "AB", "QRZ", "EJ" };
+        Machine mach = new Machine(AZ, 5, 3, List.of(
+                ROTORS.get("B"), ROTORS.get("Beta"),
+                new MovingRotor("X", new Permutation("", AZ), notches[2]),
+                new MovingRotor("Y", new Permutation("", AZ), notches[3]),
+                new MovingRotor("Z", new Permutation("", AZ), notches[4])));
+        mach.insertRotors(new String[] { "B", "Beta", "X", "Y", "Z" });
+        mach.setRotors("AAPC");
+        mach.setPlugboard(new Permutation("", AZ));
+        int[] expected = { 0, 0, 0, 15, 2 };
+        for (int k = 0; k < 2000; k += 1) {
+            boolean[] turned = new boolean[expected.length];
+            turned[expected.length - 1] = true;
+            for (int i = expected.length - 2; i > 1; i -= 1) {
+                if (notches[i + 1].indexOf(AZ.toChar(expected[i + 1]))
+                    != -1) {
+                    turned[i] = turned[i + 1] = true;
+                }
+            }
+            for (int i = 2; i < expected.length; i += 1) {
+                if (turned[i]) {
+                    expected[i] = (expected[i] + 1) % AZ.size();
+                }
+            }
+            mach.convert(0);
+            for (int i = 2; i < expected.length; i += 1) {
+                assertEquals(expected[i], mach.getRotor(i).setting());
+            }
+        }
+    }
 }
@@ -4,10 +4,21 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
-import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import ucb.util.CommandArgs;
 
@@ -25,37 +36,72 @@ public final class Main {
      *  containing messages.  Otherwise, input comes from the standard
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
-     *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
-    private HashMap<String, Rotor> rotors = new HashMap<String, Rotor>();
-    /** notches. */
-    private String notches = "";
+     *  standard output. With --stream, messages are read and written
+     *  in large blocks rather than line by line.  With --parallel, the
+     *  sections of the input that each start with a settings line are
+     *  processed concurrently; it may not be combined with --verbose,
+     *  whose trace must follow the input in order, or with --stream.
+     *  With --metrics=S, the simulator's counters (see Metrics) are
+     *  registered with JMX and printed to the standard error every S
+     *  seconds and on exit.  Exits normally if there are no errors in the
+     *  input; otherwise with code 1. */
     public static void main(String... args) {
         try {
-            CommandArgs options =
-                    new CommandArgs("--verbose --=(.*){1,3}", args);
-            if (!options.ok()) {
-                throw error("Usage: java enigma.Main [--verbose] "
-                        + "[INPUT [OUTPUT]]");
-            }
-
-            _verbose = options.contains("--verbose");
-            new Main(options.get("--")).process();
+            run(args);
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
         }
         System.exit(1);
     }
+
+    /** Process the encryptions and decryptions specified by ARGS, as for
+     *  main, but report errors by throwing EnigmaException. */
+    static void run(String... args) {
+        CommandArgs options =
+                new CommandArgs("--verbose --stream --parallel "
+                        + "--metrics=(\\d+) --=(.*){1,3}", args);
+        if (!options.ok()) {
+            throw error("Usage: java enigma.Main [--verbose] [--stream] "
+                    + "[--parallel] [--metrics=S] CONFIG "
+                    + "[INPUT [OUTPUT]]");
+        }
+        if (options.contains("--metrics")) {
+            startMetrics(Long.parseLong(options.getFirst("--metrics")));
+        }
+
+        _verbose = options.contains("--verbose");
+        _stream = options.contains("--stream");
+        _parallel = options.contains("--parallel");
+        if (_parallel && (_verbose || _stream)) {
+            throw error("--parallel cannot be combined with --verbose "
+                    + "or --stream");
+        }
+        new Main(options.get("--")).process();
+    }
+
+    /** Register the counters of Metrics with JMX and print them to the
+     *  standard error every SECONDS seconds, if positive, and on exit. */
+    static void startMetrics(long seconds) {
+        Metrics metrics = Metrics.get();
+        metrics.register();
+        if (seconds > 0) {
+            metrics.startDump(System.err, seconds);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->
+            System.err.print(metrics.dump())));
+    }
+
     /** Open the necessary files for non-option arguments ARGS (see comment
      *  on main). */
     Main(List<String> args) {
-        _config = getInput(args.get(0));
+        _configName = args.get(0);
+        if (!Files.isReadable(Paths.get(_configName))) {
+            throw error("could not open %s", _configName);
+        }
 
         if (args.size() > 1) {
-            _input = getInput(args.get(1));
-        } else {
-            _input = new Scanner(System.in);
+            _inputName = args.get(1);
         }
 
         if (args.size() > 2) {
@@ -74,6 +120,19 @@ public final class Main {
         }
     }
 
+    /** Return a channel reading from the file named NAME, or from the
+     *  standard input if NAME is null. */
+    private ReadableByteChannel getChannel(String name) {
+        if (name == null) {
+            return Channels.newChannel(System.in);
+        }
+        try {
+            return FileChannel.open(Paths.get(name));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
     /** Return a PrintStream writing to the file named NAME. */
     private PrintStream getOutput(String name) {
         try {
@@ -88,176 +147,345 @@ public final class Main {
      *  results to _output. */
     private void process() {
         Machine M = readConfig();
-        int count = 0;
-        int inCount = 0;
-        while (_input.hasNextLine()) {
-            String curr = _input.nextLine();
-            if (curr == "") {
+        TraceBuffer tracer = null;
+        if (_verbose) {
+            tracer = new TraceBuffer(_alphabet, System.err);
+            M.setTracer(tracer);
+        }
+        try {
+            if (_parallel) {
+                processParallel(M);
+            } else if (_stream) {
+                processStream(M);
+            } else {
+                processLines(M);
+            }
+        } finally {
+            if (tracer != null) {
+                tracer.close();
+            }
+        }
+    }
+
+    /** Apply M to the messages in the input named _inputName, one line
+     *  at a time. */
+    private void processLines(Machine M) {
+        Scanner input;
+        if (_inputName == null) {
+            input = new Scanner(System.in);
+        } else {
+            input = getInput(_inputName);
+        }
+        boolean configured = false;
+        while (input.hasNextLine()) {
+            String curr = input.nextLine();
+            Metrics.get().processed(1, curr.length() + 1);
+            if (curr.isEmpty()) {
                 _output.println();
-                count++;
             } else if (curr.charAt(0) == '*') {
-                setUp(M, curr, inCount);
-                inCount++;
-                count++;
+                setUp(M, curr);
+                configured = true;
             } else {
-                if (count == 0) {
+                if (!configured) {
                     throw error("Missing setting");
                 }
                 String converted = M.convert(curr);
                 printMessageLine(converted);
-                count++;
             }
         }
     }
 
-    /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
+    /** Apply copies of M to the messages in the input named _inputName,
+     *  one for each section that starts with a settings line.  Sections
+     *  are converted concurrently in the common fork-join pool, no more
+     *  than a fixed number ahead of the output, which is written in input
+     *  order.  Errors are reported after the output of the lines before
+     *  the one in error, as by processLines. */
+    private void processParallel(Machine M) {
+        Scanner input;
+        if (_inputName == null) {
+            input = new Scanner(System.in);
+        } else {
+            input = getInput(_inputName);
+        }
+        int window = SECTIONS_PER_THREAD
+            * ForkJoinPool.getCommonPoolParallelism();
+        ArrayDeque<ForkJoinTask<Section>> pending = new ArrayDeque<>();
+        List<String> section = new ArrayList<>();
+        while (input.hasNextLine()) {
+            String curr = input.nextLine();
+            Metrics.get().processed(1, curr.length() + 1);
+            if (!curr.isEmpty() && curr.charAt(0) == '*') {
+                pending.add(submitSection(M, section));
+                section = new ArrayList<>();
+                while (pending.size() > window) {
+                    pending.remove().join().print(_output);
+                }
+            }
+            section.add(curr);
+        }
+        pending.add(submitSection(M, section));
+        while (!pending.isEmpty()) {
+            pending.remove().join().print(_output);
+        }
+    }
+
+    /** Return a task, already started, that returns the output for
+     *  SECTION, a list of input lines that starts with a settings line
+     *  unless it is the beginning of the input, converted by a machine
+     *  with the configuration of M. */
+    private ForkJoinTask<Section> submitSection(Machine M,
+                                                List<String> section) {
+        return ForkJoinPool.commonPool().submit(() -> {
+            StringBuilder result = new StringBuilder();
+            String newline = System.lineSeparator();
+            Machine machine = null;
+            try {
+                for (String curr : section) {
+                    if (curr.isEmpty()) {
+                        result.append(newline);
+                    } else if (curr.charAt(0) == '*') {
+                        if (machine == null) {
+                            machine = M.fork();
+                        }
+                        setUp(machine, curr);
+                    } else {
+                        if (machine == null) {
+                            throw error("Missing setting");
+                        }
+                        result.append(groups(machine.convert(curr)))
+                            .append(newline);
+                    }
+                }
+            } catch (EnigmaException excp) {
+                return new Section(result.toString(), excp);
+            }
+            return new Section(result.toString(), null);
+        });
+    }
+
+    /** The output for a section of the input, as produced by
+     *  submitSection. */
+    private static final class Section {
+        /** A section whose lines produced the output TEXT, up to any line
+         *  in error, whose error is ERROR, or null if there is none. */
+        Section(String text, EnigmaException error) {
+            _text = text;
+            _error = error;
+        }
+
+        /** Print my output on OUT, and then throw my error, if any. */
+        void print(PrintStream out) {
+            out.print(_text);
+            if (_error != null) {
+                throw _error;
+            }
+        }
+
+        /** Output of the lines before any error. */
+        private final String _text;
+        /** Error in the section, or null. */
+        private final EnigmaException _error;
+    }
+
+    /** Apply M to the messages in the input named _inputName, reading and
+     *  writing in large blocks, with the same results as process(). */
+    private void processStream(Machine M) {
+        StreamProcessor processor = new StreamProcessor(M,
+                settings -> setUp(M, settings), Charset.defaultCharset());
+        try (ReadableByteChannel input = getChannel(_inputName)) {
+            processor.process(input, _output);
+        } catch (IOException excp) {
+            throw error("could not read %s", _inputName);
+        }
+    }
+
+    /** Return an Enigma machine configured from the contents of the
+     *  configuration file named CONFIG, with no rotors inserted. */
+    static Machine loadConfig(String config) {
+        return new Main(List.of(config)).readConfig();
+    }
+
+    /** Return an Enigma machine configured by parsing the configuration
+     *  file named CONFIG, ignoring any compiled form of it. */
+    static Machine loadText(String config) {
+        return new Main(List.of(config)).parseConfig();
+    }
+
+    /** Return an Enigma machine configured from the contents of the
+     *  configuration file named _configName, using its compiled form (see
+     *  CompiledConfig) if that is up to date. */
     private Machine readConfig() {
+        long start = System.nanoTime();
+        Machine compiled = CompiledConfig.load(_configName);
+        if (compiled == null) {
+            return parseConfig();
+        }
+        Metrics.get().compiledLoaded(System.nanoTime() - start);
+        _alphabet = compiled.alphabet();
+        return compiled;
+    }
+
+    /** Return an Enigma machine configured by parsing the configuration
+     *  file named _configName.  Rotors are registered by name and the
+     *  position of their cycles in the file, and built when first used
+     *  (see RotorRegistry). */
+    private Machine parseConfig() {
+        try {
+            _config = new Lexer(new String(
+                    Files.readAllBytes(Paths.get(_configName)),
+                    Charset.defaultCharset()));
+        } catch (IOException excp) {
+            throw error("could not open %s", _configName);
+        }
         try {
-            _alphabet = new Alphabet(_config.next());
+            long time = System.nanoTime();
+            _alphabet = new Alphabet(_config.next().toString());
             int numRotors = _config.nextInt();
             int numPawls = _config.nextInt();
-            _config.nextLine();
+            _config.skipLine();
+            Metrics.get().headerParsed(System.nanoTime() - time);
+            time = System.nanoTime();
+            Alphabet alphabet = _alphabet;
+            CharSequence text = _config.text();
+            RotorRegistry rotors = new RotorRegistry(alphabet, (start, end) ->
+                new Permutation(CharBuffer.wrap(text, start, end), alphabet));
             while (_config.hasNext()) {
-                Rotor currRotor = readRotor();
-                rotors.put(currRotor.name(), currRotor);
+                readRotor(rotors);
             }
-            return new Machine(_alphabet, numRotors, numPawls, rotors.values());
+            Metrics.get().rotorsParsed(System.nanoTime() - time);
+            return new Machine(_alphabet, numRotors, numPawls, rotors);
         } catch (NoSuchElementException excp) {
             throw error("configuration file truncated");
         }
     }
 
-    /** Return a rotor, reading its description from _config. */
-    private Rotor readRotor() {
+    /** Add a rotor to ROTORS, reading its description from _config. */
+    private void readRotor(RotorRegistry rotors) {
         try {
-            String name = _config.next();
-            String information = _config.next();
-            char type = information.charAt(0);
-            String bnotches = information.substring(1);
-            String cycles = "";
-            String next = _config.next();
-            while (next.contains(")") || next.contains("(")) {
-                if (!(next.matches("\\(.+\\)"))) {
+            String name = _config.next().toString();
+            _config.next();
+            char type = _config.charAt(0);
+            String bnotches = _config.subSequence(1, _config.length())
+                .toString();
+            int start = -1, end = -1;
+            while (_config.nextContains('(') || _config.nextContains(')')) {
+                _config.next();
+                if (_config.length() < 3 || _config.charAt(0) != '('
+                    || _config.charAt(_config.length() - 1) != ')') {
                     throw error("bad rotor description");
                 }
-                cycles += next;
-                if (_config.hasNext("\\(.+\\)||.*\\(.*||.*\\).*")) {
-                    next = _config.next();
-                } else {
-                    Rotor newRotor = returnRotor(type, name,
-                            new Permutation(cycles, _alphabet), bnotches);
-                    return newRotor;
+                if (start == -1) {
+                    start = _config.start();
                 }
+                end = _config.end();
             }
-            Rotor newRotor = returnRotor(type, name,
-                    new Permutation(cycles, _alphabet), bnotches);
-            return newRotor;
+            if (start == -1) {
+                throw error("bad rotor description");
+            }
+            rotors.add(name, type == 'M' || type == 'N' ? type : 'R',
+                    bnotches, start, end);
         } catch (NoSuchElementException excp) {
             throw error("bad rotor description");
         }
     }
-    private Rotor returnRotor(char type, String name, Permutation permutation,
-                              String bnotches) {
-        if (type == 'N') {
-            return new FixedRotor(name, permutation);
-        } else if (type == 'M') {
-            return new MovingRotor(name, permutation, bnotches);
-        }
-        return new Reflector(name, permutation);
-    }
+
     /** Set M according to the specification given on SETTINGS,
-     *  which must have the format specified in the assignment and INCOUNT. */
-    private void setUp(Machine M, String settings, int inCount) {
-        String[] names = new String[M.numRotors()];
-        Scanner curr = new Scanner(settings);
-        curr.next();
-        for (int i = 0; i < names.length; i++) {
-            String name = curr.next();
-            names[i] = name;
-        }
-        for (int i = 0; i < names.length; i++) {
-            for (int j = 0; j < names.length; j++) {
-                if (names[i].equals(names[j]) && i != j) {
-                    throw error("Duplicate rotor name");
+     *  which must have the format specified in the assignment.  Apart
+     *  from the new plugboard, allocates nothing for the settings of a
+     *  machine that has used each of its rotors before. */
+    static void setUp(Machine M, String settings) {
+        long start = System.nanoTime();
+        Lexer curr = new Lexer(settings);
+        try {
+            curr.next();
+            int count = 0;
+            for (int i = 0; i < M.numRotors(); i++) {
+                int k = M.rotorIndex(curr.next());
+                if (k == -1) {
+                    throw error("Bad rotor name");
                 }
+                for (int j = 0; j < i; j++) {
+                    if (M.getRotor(j).name().contentEquals(curr)) {
+                        throw error("Duplicate rotor name");
+                    }
+                }
+                if (i == 0 && !M.registry().reflecting(k)) {
+                    throw error("first rotor must be reflector");
+                }
+                if (!M.registry().notches(k).isEmpty()) {
+                    count++;
+                }
+                M.insertRotor(i, k);
             }
-        }
-
-        if (!(rotors.get(names[0]).reflecting())) {
-            throw error("first rotor must be reflector");
-        }
-
-        for (int i = 0; i < names.length; i++) {
-            if (!(rotors.containsKey(names[i]))) {
-                throw error("Bad rotor name");
+            if (count > M.numPawls()) {
+                throw error("incorrect number of parameters");
             }
-        }
-        String setting = curr.next();
-        String ring = "";
-        if (curr.hasNext() && !(curr.hasNext("(.*\\(.*|.*\\).*)"))) {
-            ring = curr.next();
-        }
-        M.insertRotors(names);
-        if (inCount != 0 && ring != "") {
-            M.reverseNotch();
-        }
-        M.setRings(ring);
-        if (ring != "") {
-            M.setNotch();
-        }
-        int count = 0;
-        for (int i = 0; i < M.numRotors(); i++) {
-            if (M.getRotor(i).notches() != "") {
-                count++;
+            int setting = curr.next().start();
+            if (curr.hasNext() && !curr.nextContains('(')
+                && !curr.nextContains(')')) {
+                M.setRings(curr.next());
+            } else {
+                M.setRings("");
             }
+            int plugboard = curr.end();
+            curr.rewind(setting);
+            M.setRotors(curr.next());
+            M.setPlugboard(new Permutation(CharBuffer.wrap(settings,
+                    plugboard, settings.length()), M.alphabet()));
+            Metrics.get().settingsParsed(System.nanoTime() - start);
+        } catch (NoSuchElementException excp) {
+            throw error("incomplete settings line");
         }
-        if (count > M.numPawls()) {
-            throw error("incorrect number of parameters");
-        }
-        M.setRotors(setting);
-        String plugboard = "";
-        while (curr.hasNext()) {
-            plugboard += curr.next();
-        }
-        M.setPlugboard(new Permutation(plugboard, _alphabet));
-    }
-
-    /** Return true iff verbose option specified. */
-    static boolean verbose() {
-        return _verbose;
     }
 
     /** Print MSG in groups of five (except that the last group may
      *  have fewer letters). */
     private void printMessageLine(String msg) {
+        _output.println(groups(msg));
+    }
+
+    /** Return MSG in groups of five separated by blanks (except that the
+     *  last group may have fewer letters), as printed by
+     *  printMessageLine. */
+    private static String groups(String msg) {
         int remainder = msg.length() % 5;
         int sections = (msg.length() - remainder) / 5;
         if (sections == 0) {
-            _output.println(msg);
-        } else {
-            int current = 5;
-            String result = msg.substring(0, 5);
-            for (int i = 0; i < sections - 1; i++) {
-                result += " " + msg.substring(current, current + 5);
-                current += 5;
-            }
-            _output.println(result + " " + msg.substring(
-                    current, current + remainder));
+            return msg;
         }
+        int current = 5;
+        StringBuilder result = new StringBuilder(msg.substring(0, 5));
+        for (int i = 0; i < sections - 1; i++) {
+            result.append(' ').append(msg, current, current + 5);
+            current += 5;
+        }
+        return result.append(' ')
+            .append(msg, current, current + remainder).toString();
     }
 
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
-    /** Source of input messages. */
-    private Scanner _input;
+    /** Name of the file of input messages, or null for the standard
+     *  input. */
+    private String _inputName;
+
+    /** Name of the configuration file. */
+    private String _configName;
 
     /** Source of machine configuration. */
-    private Scanner _config;
+    private Lexer _config;
 
     /** File for encoded/decoded messages. */
     private PrintStream _output;
     /** True if --verbose specified. */
     private static boolean _verbose;
+    /** True if --stream specified. */
+    private static boolean _stream;
+    /** True if --parallel specified. */
+    private static boolean _parallel;
+    /** Number of sections converted ahead of the output by
+     *  processParallel, per thread. */
+    private static final int SECTIONS_PER_THREAD = 4;
 }
@@ -0,0 +1,112 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Main class.
+ *  @author Vishal Bansal
+ */
+public class MainTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A small configuration. */
+    private static final String CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n"
+        + "5 3\n"
+        + "I MQ (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + "III MV (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + "IV MJ (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + "Beta N (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + "B R (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "  (RX) (SZ) (TV)\n";
+
+    /** Return the name of a new file holding TEXT, deleted on exit. */
+    private String file(String text) throws IOException {
+        File result = File.createTempFile("main", ".txt");
+        result.deleteOnExit();
+        Files.write(result.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return result.getPath();
+    }
+
+    /** Return the name of a new configuration file holding CONFIG, which
+     *  is deleted on exit along with any compiled form of it. */
+    private String config() throws IOException {
+        String result = file(CONFIG);
+        new File(CompiledConfig.compiledName(result)).deleteOnExit();
+        return result;
+    }
+
+    /** Return the output of Main run with OPTIONS on the input INPUT,
+     *  followed by "Error: " and the message of the error reported, if
+     *  any. */
+    private String run(String input, String... options) throws IOException {
+        String output = file("");
+        String[] args = new String[options.length + 3];
+        System.arraycopy(options, 0, args, 0, options.length);
+        args[options.length] = config();
+        args[options.length + 1] = file(input);
+        args[options.length + 2] = output;
+        String error = "";
+        try {
+            Main.run(args);
+        } catch (EnigmaException excp) {
+            error = "Error: " + excp.getMessage();
+        }
+        return new String(Files.readAllBytes(new File(output).toPath()),
+                StandardCharsets.UTF_8) + error;
+    }
+
+    /** Return input of COUNT sections, each of a settings line and a few
+     *  message lines. */
+    private String sections(int count) {
+        StringBuilder result = new StringBuilder();
+        String[] orders = { "B Beta III IV I", "B Beta I III IV",
+                            "B Beta IV I III" };
+        for (int i = 0; i < count; i += 1) {
+            result.append("* ").append(orders[i % orders.length])
+                .append(" A").append((char) ('A' + i % 26)).append("LE")
+                .append(" (YF) (ZH)\n")
+                .append("HELLO WORLD\n\nFROM HIS SHOULDER HIAWATHA\n")
+                .append("TOOK THE CAMERA OF ROSEWOOD\n");
+        }
+        return result.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testParallel() throws IOException {
+        String input = sections(40);
+        String expected = run(input);
+        assertFalse(expected.contains("Error"));
+        assertEquals(expected, run(input, "--parallel"));
+    }
+
+    @Test
+    public void testParallelError() throws IOException {
+        String input = sections(20) + "* B Beta III IV I AXLE (YF) (ZH)\n"
+            + "SOME MORE TEXT\nBAD 123\nNEVER CONVERTED\n" + sections(20);
+        String expected = run(input);
+        assertTrue(expected.endsWith(
+                "Error: character 1 not in alphabet"));
+        assertEquals(expected, run(input, "--parallel"));
+    }
+
+    @Test
+    public void testParallelMissingSetting() throws IOException {
+        String input = "\nHELLO WORLD\n" + sections(3);
+        assertEquals(run(input), run(input, "--parallel"));
+    }
+}
@@ -0,0 +1,271 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import static enigma.EnigmaException.*;
+
+/** Counters of the work done by the simulator in this JVM, for watching a
+ *  long-lived process.
+ *
+ *  There is one set of counters, get().  Each is a LongAdder, so threads
+ *  that count at once do not contend; machines also count characters and
+ *  rotor steps in fields of their own and add them here in batches (see
+ *  Machine), so that counting costs the conversion loop next to nothing.
+ *  The counters may be read through JMX, once register() has been called,
+ *  as the MBean enigma:type=Metrics (see MetricsMBean), and may be
+ *  printed periodically as text by startDump().
+ *  @author Vishal Bansal
+ */
+final class Metrics implements MetricsMBean {
+
+    /** Name under which the counters are registered with JMX. */
+    static final String OBJECT_NAME = "enigma:type=Metrics";
+
+    /** The counters. */
+    private Metrics() {
+    }
+
+    /** Return the counters of this JVM. */
+    static Metrics get() {
+        return INSTANCE;
+    }
+
+    /** Register my counters with the platform MBean server as
+     *  OBJECT_NAME, if they are not registered already. */
+    synchronized void register() {
+        if (_registered) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException excp) {
+            throw error("could not register metrics: %s",
+                    excp.getMessage());
+        }
+        _registered = true;
+    }
+
+    /** Print dump() to OUT every SECONDS seconds, SECONDS > 0, from a
+     *  daemon thread, until stopDump() is called.  Replaces any dump
+     *  already started. */
+    synchronized void startDump(PrintStream out, long seconds) {
+        if (seconds <= 0) {
+            throw error("dump interval must be positive");
+        }
+        stopDump();
+        _dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "enigma-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        _dumper.scheduleAtFixedRate(() -> out.print(dump()), seconds,
+                seconds, TimeUnit.SECONDS);
+    }
+
+    /** Stop printing periodic dumps. */
+    synchronized void stopDump() {
+        if (_dumper != null) {
+            _dumper.shutdownNow();
+            _dumper = null;
+        }
+    }
+
+    /** Return my counters as text, one "name value" line each. */
+    String dump() {
+        StringBuilder result = new StringBuilder();
+        line(result, "charsConverted", getCharsConverted());
+        line(result, "rotorSteps", getRotorSteps());
+        line(result, "settingsChanges", getSettingsChanges());
+        line(result, "linesProcessed", getLinesProcessed());
+        line(result, "bytesProcessed", getBytesProcessed());
+        line(result, "headerParseNanos", getHeaderParseNanos());
+        line(result, "rotorParseNanos", getRotorParseNanos());
+        line(result, "compiledLoadNanos", getCompiledLoadNanos());
+        line(result, "settingsParseNanos", getSettingsParseNanos());
+        line(result, "rotorCacheHits", getRotorCacheHits());
+        line(result, "rotorCacheMisses", getRotorCacheMisses());
+        line(result, "rotorCacheHitRate",
+                String.format("%.4f", getRotorCacheHitRate()));
+        line(result, "keysTried", getKeysTried());
+        line(result, "keysPerSecond",
+                String.format("%.0f", getKeysPerSecond()));
+        return result.toString();
+    }
+
+    /** Append the line "enigma.NAME VALUE" to OUT. */
+    private static void line(StringBuilder out, String name, Object value) {
+        out.append("enigma.").append(name).append(' ').append(value)
+            .append(System.lineSeparator());
+    }
+
+    /** Count CHARS characters converted with STEPS rotor steps. */
+    void converted(long chars, long steps) {
+        _chars.add(chars);
+        _steps.add(steps);
+    }
+
+    /** Count a change to the settings of a machine's rotors. */
+    void settingsChanged() {
+        _settingsChanges.increment();
+    }
+
+    /** Count LINES input lines of BYTES bytes processed. */
+    void processed(long lines, long bytes) {
+        _lines.add(lines);
+        _bytes.add(bytes);
+    }
+
+    /** Add NANOS to the time spent parsing configuration headers. */
+    void headerParsed(long nanos) {
+        _headerNanos.add(nanos);
+    }
+
+    /** Add NANOS to the time spent parsing rotor descriptions. */
+    void rotorsParsed(long nanos) {
+        _rotorNanos.add(nanos);
+    }
+
+    /** Add NANOS to the time spent loading compiled configurations. */
+    void compiledLoaded(long nanos) {
+        _compiledNanos.add(nanos);
+    }
+
+    /** Add NANOS to the time spent on settings lines. */
+    void settingsParsed(long nanos) {
+        _settingsNanos.add(nanos);
+    }
+
+    /** Count a rotor lookup that was a cache hit iff HIT. */
+    void rotorLookup(boolean hit) {
+        (hit ? _cacheHits : _cacheMisses).increment();
+    }
+
+    /** Count KEYS keys tried by a search. */
+    void keysTried(long keys) {
+        long now = System.nanoTime();
+        _firstKey.compareAndSet(0, now);
+        _keys.add(keys);
+        _lastKey.accumulateAndGet(now, Math::max);
+    }
+
+    @Override
+    public long getCharsConverted() {
+        return _chars.sum();
+    }
+
+    @Override
+    public long getRotorSteps() {
+        return _steps.sum();
+    }
+
+    @Override
+    public long getSettingsChanges() {
+        return _settingsChanges.sum();
+    }
+
+    @Override
+    public long getLinesProcessed() {
+        return _lines.sum();
+    }
+
+    @Override
+    public long getBytesProcessed() {
+        return _bytes.sum();
+    }
+
+    @Override
+    public long getHeaderParseNanos() {
+        return _headerNanos.sum();
+    }
+
+    @Override
+    public long getRotorParseNanos() {
+        return _rotorNanos.sum();
+    }
+
+    @Override
+    public long getCompiledLoadNanos() {
+        return _compiledNanos.sum();
+    }
+
+    @Override
+    public long getSettingsParseNanos() {
+        return _settingsNanos.sum();
+    }
+
+    @Override
+    public long getRotorCacheHits() {
+        return _cacheHits.sum();
+    }
+
+    @Override
+    public long getRotorCacheMisses() {
+        return _cacheMisses.sum();
+    }
+
+    @Override
+    public double getRotorCacheHitRate() {
+        long hits = getRotorCacheHits();
+        long total = hits + getRotorCacheMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getKeysTried() {
+        return _keys.sum();
+    }
+
+    @Override
+    public double getKeysPerSecond() {
+        long first = _firstKey.get();
+        long elapsed = _lastKey.get() - first;
+        if (first == 0 || elapsed <= 0) {
+            return 0;
+        }
+        return getKeysTried() * 1e9 / elapsed;
+    }
+
+    /** The counters of this JVM. */
+    private static final Metrics INSTANCE = new Metrics();
+
+    /** Characters converted. */
+    private final LongAdder _chars = new LongAdder();
+    /** Rotor steps. */
+    private final LongAdder _steps = new LongAdder();
+    /** Settings changes. */
+    private final LongAdder _settingsChanges = new LongAdder();
+    /** Input lines processed. */
+    private final LongAdder _lines = new LongAdder();
+    /** Input bytes processed. */
+    private final LongAdder _bytes = new LongAdder();
+    /** Nanoseconds spent on configuration headers. */
+    private final LongAdder _headerNanos = new LongAdder();
+    /** Nanoseconds spent on rotor descriptions. */
+    private final LongAdder _rotorNanos = new LongAdder();
+    /** Nanoseconds spent loading compiled configurations. */
+    private final LongAdder _compiledNanos = new LongAdder();
+    /** Nanoseconds spent on settings lines. */
+    private final LongAdder _settingsNanos = new LongAdder();
+    /** Rotor cache hits and misses. */
+    private final LongAdder _cacheHits = new LongAdder(),
+        _cacheMisses = new LongAdder();
+    /** Keys tried. */
+    private final LongAdder _keys = new LongAdder();
+    /** Times at which keys were first and last counted, or 0. */
+    private final AtomicLong _firstKey = new AtomicLong(),
+        _lastKey = new AtomicLong();
+    /** True iff I am registered with JMX. */
+    private boolean _registered;
+    /** Prints periodic dumps, or null. */
+    private ScheduledExecutorService _dumper;
+}
@@ -0,0 +1,56 @@
+package enigma;
+
+/** The management interface of Metrics, through which JMX clients read
+ *  the counters of the simulator.  Counts are totals since the start of
+ *  the JVM; times are in nanoseconds; rates are per second.
+ *  @author Vishal Bansal
+ */
+public interface MetricsMBean {
+
+    /** Return the number of characters converted by machines. */
+    long getCharsConverted();
+
+    /** Return the number of rotor steps made while converting. */
+    long getRotorSteps();
+
+    /** Return the number of times machines' rotors were set. */
+    long getSettingsChanges();
+
+    /** Return the number of input lines processed by Main. */
+    long getLinesProcessed();
+
+    /** Return the number of bytes of input processed by Main, counting
+     *  each character as a byte when input is read by lines. */
+    long getBytesProcessed();
+
+    /** Return the time spent parsing configuration headers (alphabet and
+     *  slot counts). */
+    long getHeaderParseNanos();
+
+    /** Return the time spent parsing rotor descriptions. */
+    long getRotorParseNanos();
+
+    /** Return the time spent loading compiled configurations. */
+    long getCompiledLoadNanos();
+
+    /** Return the time spent parsing and applying settings lines. */
+    long getSettingsParseNanos();
+
+    /** Return the number of rotor lookups answered from a registry's
+     *  cache of built rotors. */
+    long getRotorCacheHits();
+
+    /** Return the number of rotor lookups that built the rotor. */
+    long getRotorCacheMisses();
+
+    /** Return the fraction of rotor lookups answered from the cache, or 0
+     *  if there have been none. */
+    double getRotorCacheHitRate();
+
+    /** Return the number of keys tried by searches. */
+    long getKeysTried();
+
+    /** Return the rate at which searches have tried keys, from the first
+     *  key counted to the last. */
+    double getKeysPerSecond();
+}
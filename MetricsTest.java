@@ -0,0 +1,68 @@
+package enigma;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Metrics class.
+ *  @author Vishal Bansal
+ */
+public class MetricsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a naval machine with rotors B, Beta, III and IV. */
+    private Machine machine() {
+        Machine mach = new Machine(TestUtils.UPPER, 4, 2, List.of(
+                new Reflector("B", new Permutation(
+                        TestUtils.NAVALA.get("B"), TestUtils.UPPER)),
+                new FixedRotor("Beta", new Permutation(
+                        TestUtils.NAVALA.get("Beta"), TestUtils.UPPER)),
+                new MovingRotor("III", new Permutation(
+                        TestUtils.NAVALA.get("III"), TestUtils.UPPER), "V"),
+                new MovingRotor("IV", new Permutation(
+                        TestUtils.NAVALA.get("IV"), TestUtils.UPPER), "J")));
+        mach.insertRotors(new String[] { "B", "Beta", "III", "IV" });
+        mach.setPlugboard(new Permutation("", TestUtils.UPPER));
+        return mach;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testMachineCounts() {
+        Metrics metrics = Metrics.get();
+        Machine mach = machine();
+        long chars = metrics.getCharsConverted();
+        long steps = metrics.getRotorSteps();
+        long changes = metrics.getSettingsChanges();
+        mach.setRotors("AUA");
+        mach.convert("HELLO WORLD");
+        assertEquals(changes + 1, metrics.getSettingsChanges());
+        assertEquals(chars + 10, metrics.getCharsConverted());
+        assertEquals(steps + 11, metrics.getRotorSteps());
+        assertTrue(metrics.dump().contains("enigma.charsConverted "));
+    }
+
+    @Test
+    public void testJmx() throws JMException {
+        Metrics metrics = Metrics.get();
+        metrics.register();
+        metrics.register();
+        metrics.keysTried(5);
+        Object keys = ManagementFactory.getPlatformMBeanServer()
+            .getAttribute(new ObjectName(Metrics.OBJECT_NAME), "KeysTried");
+        assertTrue((Long) keys >= 5);
+    }
+}
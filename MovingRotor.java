@@ -12,25 +12,18 @@ class MovingRotor extends Rotor {
      *  The Rotor is initally in its 0 setting (first character of its
      *  alphabet).
      */
-    private String _notches;
     MovingRotor(String name, Permutation perm, String notches) {
-        super(name, perm);
-        _notches = notches;
+        super(name, perm, notches);
     }
 
     @Override
-    void advance() {
-        super.set(super.setting() + 1);
+    boolean rotates() {
+        return true;
     }
 
     @Override
-    void setNotches(String notches) {
-        _notches = notches;
-    }
-
-    @Override
-    String notches() {
-        return _notches;
+    void advance() {
+        step();
     }
 
 }
@@ -0,0 +1,345 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** Log-probabilities of the sequences of 1 to N letters (n-grams) of a
+ *  language, used to score candidate decryptions.  The table for k-grams
+ *  holds one float for each of the size^k k-grams of an alphabet, indexed
+ *  by reading the k-gram as a base-size number, so that scoring a text is
+ *  one pass that rolls the index along it.
+ *
+ *  A model is stored in a binary file holding, in little-endian order,
+ *  the int MAGIC, the int VERSION, the number of characters in the
+ *  alphabet and N, then the alphabet's characters as 16-bit values, padded
+ *  to a multiple of four bytes, and then the tables for 1-grams to N-grams
+ *  in turn.  Loading such a file maps each table into memory without
+ *  reading it, so pages are read only when first used, and one loaded
+ *  model may be shared by any number of threads.
+ *  @author Vishal Bansal
+ */
+final class NgramModel implements Scorer {
+
+    /** First int of a model file. */
+    static final int MAGIC = 0x4d475245;
+    /** Version of the model file format. */
+    static final int VERSION = 1;
+    /** Length in bytes of the fixed part of a model file's header. */
+    private static final int HEADER = 16;
+
+    /** A model of the n-grams of ALPHABET for n from 1 to TABLES.length,
+     *  where TABLES[K-1] holds the log-probabilities of the K-grams. */
+    NgramModel(Alphabet alphabet, FloatBuffer[] tables) {
+        if (tables.length < 1) {
+            throw error("n-gram model has no tables");
+        }
+        for (int k = 1; k <= tables.length; k++) {
+            if (tables[k - 1].capacity() != power(alphabet.size(), k)) {
+                throw error("n-gram table does not match its alphabet");
+            }
+        }
+        _alphabet = alphabet;
+        _tables = tables.clone();
+    }
+
+    /** A model of the n-grams of ALPHABET with log-probabilities TABLES,
+     *  as for NgramModel(Alphabet, FloatBuffer[]). */
+    NgramModel(Alphabet alphabet, float[][] tables) {
+        this(alphabet, wrap(tables));
+    }
+
+    /** Return TABLES as float buffers. */
+    private static FloatBuffer[] wrap(float[][] tables) {
+        FloatBuffer[] result = new FloatBuffer[tables.length];
+        for (int k = 0; k < tables.length; k++) {
+            result[k] = FloatBuffer.wrap(tables[k]);
+        }
+        return result;
+    }
+
+    /** Return the model in the file named NAME, which must model the
+     *  n-grams of ALPHABET.  The file is either a model file written by
+     *  write, or a text file as read by read. */
+    static NgramModel open(String name, Alphabet alphabet) {
+        NgramModel result;
+        if (isModelFile(name)) {
+            result = load(name);
+        } else {
+            result = read(name, alphabet);
+        }
+        if (!result.alphabet().toString().equals(alphabet.toString())) {
+            throw error("%s models a different alphabet", name);
+        }
+        return result;
+    }
+
+    /** Return true iff the file named NAME starts with MAGIC. */
+    private static boolean isModelFile(String name) {
+        try (FileChannel file = FileChannel.open(Paths.get(name))) {
+            ByteBuffer start = ByteBuffer.allocate(4)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            while (start.hasRemaining() && file.read(start) != -1) {
+                continue;
+            }
+            return !start.hasRemaining() && start.getInt(0) == MAGIC;
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+    }
+
+    /** Return the model in the model file named NAME, memory-mapped. */
+    static NgramModel load(String name) {
+        try (FileChannel file = FileChannel.open(Paths.get(name))) {
+            ByteBuffer header = file.map(FileChannel.MapMode.READ_ONLY, 0,
+                    Math.min(file.size(), HEADER))
+                .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.limit() < HEADER || header.getInt(0) != MAGIC) {
+                throw error("%s is not an n-gram model", name);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw error("%s has unsupported version %d", name,
+                        header.getInt(4));
+            }
+            int size = header.getInt(8);
+            int n = header.getInt(12);
+            long posn = HEADER + align(2L * size);
+            if (size < 1 || n < 1 || posn > file.size()) {
+                throw error("%s is corrupt", name);
+            }
+            CharSequence chars = file.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER, 2L * size).order(ByteOrder.LITTLE_ENDIAN)
+                .asCharBuffer();
+            Alphabet alphabet = new Alphabet(chars.toString());
+            FloatBuffer[] tables = new FloatBuffer[n];
+            for (int k = 1; k <= n; k++) {
+                long length = 4L * power(size, k);
+                if (posn + length > file.size()) {
+                    throw error("%s is truncated", name);
+                }
+                tables[k - 1] = file.map(FileChannel.MapMode.READ_ONLY,
+                        posn, length).order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer();
+                posn += length;
+            }
+            return new NgramModel(alphabet, tables);
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+    }
+
+    /** Write me to the file named NAME in model file format. */
+    void write(String name) {
+        String chars = _alphabet.toString();
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BLOCK)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel file = FileChannel.open(Paths.get(name),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(chars.length())
+                .putInt(order());
+            for (int i = 0; i < chars.length(); i++) {
+                put(file, buffer.putChar(chars.charAt(i)));
+            }
+            while (buffer.position() % 4 != 0) {
+                buffer.put((byte) 0);
+            }
+            for (FloatBuffer table : _tables) {
+                for (int i = 0; i < table.capacity(); i++) {
+                    put(file, buffer.putFloat(table.get(i)));
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                file.write(buffer);
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", name);
+        }
+    }
+
+    /** Write the contents of BUFFER to FILE if BUFFER is nearly full. */
+    private static void put(FileChannel file, ByteBuffer buffer)
+        throws IOException {
+        if (buffer.remaining() < 8) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                file.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /** Return the model read from the text file named NAME, whose lines
+     *  each hold an n-gram of characters of ALPHABET and its count in
+     *  some corpus, separated by blanks.  All n-grams must have the same
+     *  length, N.  The counts of shorter n-grams are taken to be those of
+     *  the N-grams they begin.  N-grams not listed are given a small floor
+     *  probability. */
+    static NgramModel read(String name, Alphabet alphabet) {
+        int n = 0;
+        double[] counts = null;
+        try (BufferedReader input = Files.newBufferedReader(Paths.get(name),
+                StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = input.readLine()) != null) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields[0].isEmpty()) {
+                    continue;
+                }
+                if (fields.length != 2) {
+                    throw error("bad n-gram line: %s", line);
+                }
+                if (counts == null) {
+                    n = fields[0].length();
+                    counts = new double[power(alphabet.size(), n)];
+                } else if (fields[0].length() != n) {
+                    throw error("n-grams of different lengths in %s", name);
+                }
+                counts[index(fields[0], alphabet)] +=
+                    Double.parseDouble(fields[1]);
+            }
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        } catch (NumberFormatException excp) {
+            throw error("bad n-gram count in %s", name);
+        }
+        if (counts == null) {
+            throw error("no n-grams in %s", name);
+        }
+        double[][] all = new double[n][];
+        all[n - 1] = counts;
+        for (int k = n - 1; k >= 1; k--) {
+            all[k - 1] = new double[all[k].length / alphabet.size()];
+            for (int i = 0; i < all[k].length; i++) {
+                all[k - 1][i / alphabet.size()] += all[k][i];
+            }
+        }
+        return fromCounts(alphabet, all);
+    }
+
+    /** Return the model of ALPHABET whose K-grams have counts
+     *  COUNTS[K-1].  K-grams with no count are given a small floor
+     *  probability. */
+    static NgramModel fromCounts(Alphabet alphabet, double[][] counts) {
+        float[][] tables = new float[counts.length][];
+        for (int k = 0; k < counts.length; k++) {
+            double total = 0;
+            for (double count : counts[k]) {
+                total += count;
+            }
+            if (total <= 0) {
+                throw error("no %d-grams counted", k + 1);
+            }
+            float floor = (float) Math.log10(FLOOR / total);
+            tables[k] = new float[counts[k].length];
+            for (int i = 0; i < counts[k].length; i++) {
+                tables[k][i] = counts[k][i] > 0
+                    ? (float) Math.log10(counts[k][i] / total) : floor;
+            }
+        }
+        return new NgramModel(alphabet, tables);
+    }
+
+    /** Return the table index of the n-gram GRAM in ALPHABET. */
+    private static int index(String gram, Alphabet alphabet) {
+        int result = 0;
+        for (int i = 0; i < gram.length(); i++) {
+            int c = alphabet.toInt(gram.charAt(i));
+            if (c == -1) {
+                throw error("character %c not in alphabet", gram.charAt(i));
+            }
+            result = result * alphabet.size() + c;
+        }
+        return result;
+    }
+
+    /** Return BASE^EXPONENT, which must be small enough for a table of
+     *  that many floats to be mapped as one buffer. */
+    static int power(int base, int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= base;
+            if (result > Integer.MAX_VALUE / 4) {
+                throw error("n-gram table too large");
+            }
+        }
+        return (int) result;
+    }
+
+    /** Return N rounded up to a multiple of four. */
+    private static long align(long n) {
+        return (n + 3) & ~3L;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the length of my longest n-grams. */
+    int order() {
+        return _tables.length;
+    }
+
+    /** Return the log-probability of the K-gram with index INDEX,
+     *  1 <= K <= order(). */
+    float logProbability(int k, int index) {
+        return _tables[k - 1].get(index);
+    }
+
+    /** Return a scorer that sums the log-probabilities of the K-grams of
+     *  a text, 1 <= K <= order(). */
+    Scorer scorer(int k) {
+        if (k < 1 || k > order()) {
+            throw error("no %d-gram table", k);
+        }
+        return (text, length) -> score(_tables[k - 1], k, text, length);
+    }
+
+    /** Return the sum of the log-probabilities of the order()-grams of the
+     *  first LENGTH characters of TEXT. */
+    @Override
+    public double score(int[] text, int length) {
+        return score(_tables[_tables.length - 1], _tables.length, text,
+                length);
+    }
+
+    /** Return the sum over the K-grams of the first LENGTH characters of
+     *  TEXT of their entries in TABLE. */
+    private double score(FloatBuffer table, int k, int[] text, int length) {
+        int size = _alphabet.size();
+        int span = table.capacity() / size;
+        int index = 0;
+        double result = 0;
+        for (int i = 0; i < Math.min(k - 1, length); i++) {
+            index = index * size + text[i];
+        }
+        for (int i = k - 1; i < length; i++) {
+            index = index * size + text[i];
+            result += table.get(index);
+            index -= text[i - k + 1] * span;
+        }
+        return result;
+    }
+
+    /** Size in bytes of the buffer used to write model files. */
+    private static final int WRITE_BLOCK = 1 << 16;
+    /** Count given to an n-gram missing from a corpus. */
+    private static final double FLOOR = 0.01;
+
+    /** Alphabet of the n-grams. */
+    private final Alphabet _alphabet;
+    /** _tables[K-1] holds the log-probability of each K-gram, by
+     *  index. */
+    private final FloatBuffer[] _tables;
+}
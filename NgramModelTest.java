@@ -0,0 +1,111 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the NgramModel class.
+ *  @author Vishal Bansal
+ */
+public class NgramModelTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final Alphabet ABC = new Alphabet("ABC");
+
+    /** Return a model of ABC in which the bigram with index I has count
+     *  I + 1. */
+    private NgramModel model() {
+        double[] bigrams = new double[9];
+        double[] unigrams = new double[3];
+        for (int i = 0; i < 9; i++) {
+            bigrams[i] = i + 1;
+            unigrams[i / 3] += i + 1;
+        }
+        return NgramModel.fromCounts(ABC, new double[][] {
+            unigrams, bigrams });
+    }
+
+    /** Return a new temporary file that is deleted on exit. */
+    private File tempFile() throws IOException {
+        File result = File.createTempFile("ngrams", null);
+        result.deleteOnExit();
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testScore() {
+        NgramModel model = model();
+        assertEquals(2, model.order());
+        int[] text = { 0, 2, 1, 1 };
+        double expected = Math.log10(3.0 / 45) + Math.log10(8.0 / 45)
+            + Math.log10(5.0 / 45);
+        assertEquals(expected, model.score(text, 4), 1e-5);
+        assertEquals(Math.log10(3.0 / 45), model.score(text, 2), 1e-5);
+        assertEquals(0.0, model.score(text, 1), 1e-9);
+        double unigrams = Math.log10(6.0 / 45) + Math.log10(24.0 / 45)
+            + 2 * Math.log10(15.0 / 45);
+        assertEquals(unigrams, model.scorer(1).score(text, 4), 1e-5);
+    }
+
+    @Test
+    public void testWriteAndLoad() throws IOException {
+        NgramModel model = model();
+        File file = tempFile();
+        model.write(file.getPath());
+        NgramModel loaded = NgramModel.load(file.getPath());
+        assertEquals("ABC", loaded.alphabet().toString());
+        assertEquals(2, loaded.order());
+        for (int i = 0; i < 9; i++) {
+            assertEquals(model.logProbability(2, i),
+                    loaded.logProbability(2, i), 0);
+        }
+        int[] text = { 2, 2, 0, 1, 2, 0 };
+        assertEquals(model.score(text, 6), loaded.score(text, 6), 0);
+        assertEquals(model.score(text, 6),
+                NgramModel.open(file.getPath(), ABC).score(text, 6), 0);
+    }
+
+    @Test
+    public void testReadCounts() throws IOException {
+        File file = tempFile();
+        try (PrintStream out = new PrintStream(file)) {
+            out.println("AB 3");
+            out.println("BA 1");
+            out.println();
+            out.println("AB 4");
+        }
+        NgramModel model = NgramModel.open(file.getPath(), ABC);
+        assertEquals(2, model.order());
+        assertEquals(Math.log10(7.0 / 8), model.logProbability(2, 1), 1e-5);
+        assertEquals(Math.log10(0.01 / 8), model.logProbability(2, 0), 1e-5);
+        assertEquals(Math.log10(1.0 / 8), model.logProbability(1, 1), 1e-5);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testWrongAlphabet() throws IOException {
+        File file = tempFile();
+        model().write(file.getPath());
+        NgramModel.open(file.getPath(), new Alphabet("ABCD"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testTruncated() throws IOException {
+        File file = tempFile();
+        try (PrintStream out = new PrintStream(file)) {
+            out.write(new byte[] { 0x45, 0x52, 0x47, 0x4d, 1, 0, 0, 0 });
+        }
+        NgramModel.load(file.getPath());
+    }
+}
@@ -0,0 +1,143 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** Computes the rotor settings of a machine after many keypresses without
+ *  making each keypress in turn.
+ *
+ *  Within a chain of moving rotors, a rotor whose left neighbor also moves
+ *  steps whenever its right neighbor is at a notch (it is "triggered"), and
+ *  also on the keypress after it lands on one of its own notches (the
+ *  double step).  When no such rotor has two adjacent notches, triggers
+ *  are never sent on consecutive keypresses, so a rotor rests only at
+ *  settings that are not notches and passes over each notch in a single
+ *  keypress.  The settings after any number of triggers then follow from
+ *  counting notches, and the triggers a rotor sends to its left neighbor
+ *  follow from the number it receives.  Both are computed from the fast
+ *  rotor leftward with a fixed number of table lookups per rotor.
+ *  @author Vishal Bansal
+ */
+final class Odometer {
+
+    /** Not instantiable. */
+    private Odometer() {
+    }
+
+    /** Return true iff jump may be applied to ROTORS, the slots of a
+     *  machine. */
+    static boolean canJump(Rotor[] rotors) {
+        for (int i = 2; i < rotors.length; i++) {
+            if (rotors[i].rotates() && rotors[i - 1].rotates()
+                && hasAdjacentNotches(rotors[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return true iff ROTOR has notches at two consecutive settings. */
+    private static boolean hasAdjacentNotches(Rotor rotor) {
+        for (int k = 0; k < rotor.size(); k++) {
+            if (rotor.notchAt(k) && rotor.notchAt((k + 1) % rotor.size())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Set ROTORS, the slots of a machine for which canJump is true, to
+     *  their settings after STEPS more keypresses.  No rotor whose left
+     *  neighbor moves may be at a notch unless it landed there on the
+     *  previous keypress, as is true after any keypress. */
+    static void jump(Rotor[] rotors, long steps) {
+        if (steps == 0) {
+            return;
+        }
+        int window = rotors.length + 1;
+        long[] received = new long[window];
+        long[] sent = new long[window];
+        /* RECEIVED[J] and SENT[J] count the triggers the current rotor
+         * receives from its right and sends to its left during the first
+         * STEPS - J keypresses. */
+        for (int i = rotors.length - 1; i >= 1; i--) {
+            Rotor rotor = rotors[i];
+            boolean leftMoves = i > 1 && rotors[i - 1].rotates();
+            Arrays.fill(sent, 0);
+            if (!rotor.rotates()) {
+                long[] empty = sent;
+                sent = received;
+                received = empty;
+                continue;
+            }
+            int n = rotor.size();
+            int start = rotor.setting();
+            if (i == rotors.length - 1) {
+                for (int j = 0; leftMoves && j < window; j++) {
+                    sent[j] = notchesPassed(rotor, start, steps - j);
+                }
+                rotor.set((int) ((start + steps) % n));
+            } else if (!leftMoves) {
+                rotor.set((int) ((start + received[0]) % n));
+            } else {
+                boolean startsAtNotch = rotor.notchAt(start);
+                int rest = startsAtNotch ? (start + 1) % n : start;
+                for (int j = 0; j + 1 < window && steps - j >= 1; j++) {
+                    sent[j] = (startsAtNotch ? 1 : 0)
+                        + landings(rotor, rest, received[j + 1]);
+                }
+                int posn = restAfter(rotor, rest, received[0]);
+                if (received[0] > received[1]
+                    && rotor.notchAt((posn + n - 1) % n)) {
+                    posn = (posn + n - 1) % n;
+                }
+                rotor.set(posn);
+            }
+            long[] used = received;
+            received = sent;
+            sent = used;
+        }
+    }
+
+    /** Return the number of notches of ROTOR at the STEPS settings
+     *  starting at START, wrapping around. */
+    private static long notchesPassed(Rotor rotor, int start, long steps) {
+        if (steps <= 0) {
+            return 0;
+        }
+        int n = rotor.size();
+        int notches = rotor.notchesBelow(n);
+        int end = start + (int) (steps % n);
+        long result = steps / n * notches - rotor.notchesBelow(start);
+        if (end <= n) {
+            return result + rotor.notchesBelow(end);
+        }
+        return result + notches + rotor.notchesBelow(end - n);
+    }
+
+    /** Return the number of settings of ROTOR that are not notches. */
+    private static int restCount(Rotor rotor) {
+        return rotor.size() - rotor.notchesBelow(rotor.size());
+    }
+
+    /** Return the resting setting of ROTOR after it receives TRIGGERS
+     *  triggers starting from setting REST, which is not a notch. */
+    private static int restAfter(Rotor rotor, int rest, long triggers) {
+        int rests = restCount(rotor);
+        int rank = rest - rotor.notchesBelow(rest);
+        return rotor.restSetting((int) ((rank + triggers % rests) % rests));
+    }
+
+    /** Return the number of times ROTOR lands on a notch while receiving
+     *  TRIGGERS triggers starting from setting REST, which is not a
+     *  notch. */
+    private static long landings(Rotor rotor, int rest, long triggers) {
+        if (triggers <= 0) {
+            return 0;
+        }
+        int n = rotor.size();
+        int rests = restCount(rotor);
+        int end = restAfter(rotor, rest, triggers);
+        long moved = triggers / rests * n + (end - rest + n) % n;
+        return moved - triggers;
+    }
+}
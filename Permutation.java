@@ -1,5 +1,7 @@
 package enigma;
 
+import java.util.Arrays;
+
 import static enigma.EnigmaException.*;
 /** Represents a permutation of a range of integers starting at 0 corresponding
  *  to the characters of an alphabet.
@@ -8,18 +10,108 @@ import static enigma.EnigmaException.*;
 class Permutation {
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
-    /** cycles. */
-    private String _cycle;
+    /** _forward[K] is the index K maps to. */
+    private int[] _forward;
+    /** _inverse[K] is the index that maps to K. */
+    private int[] _inverse;
+    /** Number of indices that map to themselves. */
+    private int _fixed;
 
-    Permutation(String cycles, Alphabet alphabet) {
-        _cycle = cycles;
+    /** Set this Permutation to that specified by CYCLES, a string in the
+     *  form "(cccc) (cc) ..." where the c's are characters in ALPHABET, which
+     *  is interpreted as a permutation in cycle notation.  Characters in the
+     *  alphabet that are not included in any cycle map to themselves.
+     *  Whitespace is ignored. */
+    Permutation(CharSequence cycles, Alphabet alphabet) {
         _alphabet = alphabet;
+        _forward = new int[alphabet.size()];
+        _inverse = new int[alphabet.size()];
+        for (int i = 0; i < _forward.length; i++) {
+            _forward[i] = i;
+            _inverse[i] = i;
+        }
+        _fixed = _forward.length;
+        parseCycles(cycles);
     }
 
-    /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     *  c0c1...cm. */
-    private void addCycle(String cycle) {
-        _cycle = _cycle + " " + cycle;
+    /** Set this Permutation to the one that maps each index K of ALPHABET
+     *  to FORWARD[K], which must be a permutation of 0 .. size-1. */
+    Permutation(int[] forward, Alphabet alphabet) {
+        _alphabet = alphabet;
+        if (forward.length != alphabet.size()) {
+            throw error("permutation table does not match its alphabet");
+        }
+        _forward = forward.clone();
+        _inverse = new int[forward.length];
+        Arrays.fill(_inverse, -1);
+        for (int k = 0; k < forward.length; k++) {
+            int to = forward[k];
+            if (to < 0 || to >= forward.length || _inverse[to] != -1) {
+                throw error("permutation table is not a permutation");
+            }
+            _inverse[to] = k;
+            if (to == k) {
+                _fixed += 1;
+            }
+        }
+    }
+
+    /** Add every cycle in CYCLES, written in cycle notation, to the
+     *  permutation. */
+    private void parseCycles(CharSequence cycles) {
+        boolean[] seen = new boolean[_forward.length];
+        boolean inCycle = false;
+        int first = -1, prev = -1;
+        for (int i = 0; i < cycles.length(); i++) {
+            char c = cycles.charAt(i);
+            if (c == '(') {
+                if (inCycle) {
+                    throw error("bad cycle format: %s", cycles);
+                }
+                inCycle = true;
+                first = prev = -1;
+            } else if (c == ')') {
+                if (!inCycle) {
+                    throw error("bad cycle format: %s", cycles);
+                }
+                if (first != -1) {
+                    map(prev, first);
+                }
+                inCycle = false;
+            } else if (Character.isWhitespace(c)) {
+                continue;
+            } else if (!inCycle) {
+                throw error("bad cycle format: %s", cycles);
+            } else {
+                int k = _alphabet.toInt(c);
+                if (k == -1) {
+                    throw error("character %c not in alphabet", c);
+                }
+                if (seen[k]) {
+                    throw error("character %c appears in more than one cycle",
+                            c);
+                }
+                seen[k] = true;
+                if (first == -1) {
+                    first = k;
+                } else {
+                    map(prev, k);
+                }
+                prev = k;
+            }
+        }
+        if (inCycle) {
+            throw error("bad cycle format: %s", cycles);
+        }
+    }
+
+    /** Make the permutation map FROM to TO. */
+    private void map(int from, int to) {
+        _forward[from] = to;
+        _inverse[to] = from;
+        if (from != to) {
+            _fixed -= 1;
+        }
     }
 
     /** Return the value of P modulo the size of this permutation. */
@@ -39,45 +131,30 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        return _alphabet.toInt(permute(_alphabet.toChar(wrap(p))));
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        return _alphabet.toInt(invert(_alphabet.toChar(wrap(c))));
+        return _inverse[wrap(c)];
     }
 
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET. */
     char permute(char p) {
-        int cycleIndex = _cycle.indexOf(p);
-        if (_cycle.indexOf(p) != -1) {
-            if ((_cycle.charAt(cycleIndex + 1) == ')')) {
-                int frontPIndex = _cycle.lastIndexOf("(", cycleIndex + 1);
-                return _alphabet.toChar(_alphabet.toInt(
-                        _cycle.charAt(frontPIndex + 1)));
-            } else {
-                return _alphabet.toChar(_alphabet.toInt(
-                        _cycle.charAt(cycleIndex + 1)));
-            }
+        if (!_alphabet.contains(p)) {
+            return p;
         }
-        return p;
+        return _alphabet.toChar(_forward[_alphabet.toInt(p)]);
     }
 
     /** Return the result of applying the inverse of this permutation to C. */
     char invert(char c) {
-        int cycleIndex = _cycle.indexOf(c);
-        if (_cycle.indexOf(c) != -1) {
-            if ((_cycle.charAt(cycleIndex - 1) == '(')) {
-                String remaining = _cycle.substring(cycleIndex + 1,
-                        _cycle.length());
-                return _cycle.charAt(remaining.indexOf(')') + cycleIndex);
-            } else {
-                return _cycle.charAt(cycleIndex - 1);
-            }
+        if (!_alphabet.contains(c)) {
+            return c;
         }
-        return c;
+        return _alphabet.toChar(_inverse[_alphabet.toInt(c)]);
     }
 
     /** Return the alphabet used to initialize this Permutation. */
@@ -88,16 +165,6 @@ class Permutation {
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        String cyclesString = _cycle;
-        for (int i = 0; i < _alphabet.size(); i++) {
-            if (_cycle.indexOf(_alphabet.toChar(i)) == -1) {
-                return false;
-            }
-            int pIndex = cyclesString.indexOf('(');
-            if (_cycle.charAt(pIndex + 2) == ')') {
-                return false;
-            }
-        }
-        return true;
+        return _fixed == 0;
     }
 }
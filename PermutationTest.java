@@ -95,4 +95,30 @@ public class PermutationTest {
         assertTrue(trueP.derangement());
         assertFalse(falseP.derangement());
     }
+
+    @Test
+    public void testDerangementLaterSingleton() {
+        Permutation p = new Permutation("(ABC) (D)", new Alphabet("ABCD"));
+        assertFalse(p.derangement());
+        assertEquals('D', p.permute('D'));
+        assertEquals(3, p.invert(3));
+    }
+
+    @Test
+    public void testNavalRotors() {
+        for (String name : NAVALA_MAP.keySet()) {
+            perm = new Permutation(NAVALA.get(name), UPPER);
+            checkPerm(name, UPPER_STRING, NAVALA_MAP.get(name));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testUnclosedCycle() {
+        new Permutation("(ABC) (DE", new Alphabet("ABCDE"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testRepeatedCharacter() {
+        new Permutation("(ABC) (CD)", new Alphabet("ABCDE"));
+    }
 }
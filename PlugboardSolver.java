@@ -0,0 +1,163 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** Scores plugboards for one rotor key, for a hill-climbing search of the
+ *  plugboard.
+ *
+ *  The rotor core of a machine, all of a conversion but the plugboard at
+ *  either end, depends only on the rotor key and the position in the
+ *  message.  A solver computes the core's table for each position of the
+ *  ciphertext once, so that trying a plugboard costs one pass of three
+ *  table lookups per position, with no branches, no calls and no
+ *  allocation, and one pass of the scorer.  The previous decryption is
+ *  kept, so that a change that does not improve the score is undone
+ *  without decrypting again.
+ *  @author Vishal Bansal
+ */
+final class PlugboardSolver {
+
+    /** A solver for CIPHER, a ciphertext as indices, decrypted by MACHINE
+     *  from its current rotor settings, that scores decryptions with
+     *  SCORER.  MACHINE's rotors are advanced past the ciphertext.  The
+     *  plugboard starts empty. */
+    PlugboardSolver(Machine machine, int[] cipher, Scorer scorer) {
+        int n = machine.alphabet().size();
+        _size = n;
+        _length = cipher.length;
+        _cipher = cipher.clone();
+        _scorer = scorer;
+        _core = new int[_length * n];
+        _text = new int[_length];
+        for (int k = 0; k < _length; k++) {
+            if (_cipher[k] < 0 || _cipher[k] >= n) {
+                throw error("ciphertext index %d out of range", _cipher[k]);
+            }
+            machine.seek(1);
+            for (int c = 0; c < n; c++) {
+                _core[k * n + c] = machine.scramble(c);
+            }
+            _text[k] = _core[k * n + _cipher[k]];
+        }
+        _saved = new int[_length];
+        _plug = new int[n];
+        for (int c = 0; c < n; c++) {
+            _plug[c] = c;
+        }
+        _score = _scorer.score(_text, _length);
+    }
+
+    /** Return the size of the alphabet. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the score of the decryption with the current plugboard. */
+    double score() {
+        return _score;
+    }
+
+    /** Return the current plugboard, as each letter's partner (itself if
+     *  it is not plugged). */
+    int[] plugboard() {
+        return _plug.clone();
+    }
+
+    /** Return the decryption with the current plugboard.  The result is
+     *  mine and must not be changed. */
+    int[] text() {
+        return _text;
+    }
+
+    /** Change the plugboard to pair A with B after unplugging both, or
+     *  just to unplug them if they are already paired, and return the
+     *  score of the decryption with the new plugboard.  undo() reverses
+     *  the change. */
+    double swap(int a, int b) {
+        if (a == b || a < 0 || b < 0 || a >= _size || b >= _size) {
+            throw error("cannot pair %d with %d", a, b);
+        }
+        _letterCount = 0;
+        saveLetter(a);
+        saveLetter(b);
+        saveLetter(_plug[a]);
+        saveLetter(_plug[b]);
+        boolean paired = _plug[a] == b;
+        _plug[_plug[a]] = _plug[a];
+        _plug[_plug[b]] = _plug[b];
+        _plug[a] = a;
+        _plug[b] = b;
+        if (!paired) {
+            _plug[a] = b;
+            _plug[b] = a;
+        }
+        int[] old = _text;
+        _text = _saved;
+        _saved = old;
+        int[] plug = _plug, core = _core, cipher = _cipher, text = _text;
+        for (int k = 0, row = 0; k < _length; k += 1, row += _size) {
+            text[k] = plug[core[row + plug[cipher[k]]]];
+        }
+        _oldScore = _score;
+        _score = _scorer.score(text, _length);
+        _undoable = true;
+        return _score;
+    }
+
+    /** Reverse the last call of swap. */
+    void undo() {
+        if (!_undoable) {
+            throw error("no change to undo");
+        }
+        _undoable = false;
+        for (int i = 0; i < _letterCount; i++) {
+            _plug[_letters[i]] = _oldPartners[i];
+        }
+        int[] text = _saved;
+        _saved = _text;
+        _text = text;
+        _score = _oldScore;
+    }
+
+    /** Add LETTER, if it is not there already, to the letters whose
+     *  partners the current swap changes, saving its partner. */
+    private void saveLetter(int letter) {
+        for (int i = 0; i < _letterCount; i++) {
+            if (_letters[i] == letter) {
+                return;
+            }
+        }
+        _letters[_letterCount] = letter;
+        _oldPartners[_letterCount] = _plug[letter];
+        _letterCount += 1;
+    }
+
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Length of the ciphertext. */
+    private final int _length;
+    /** The ciphertext. */
+    private final int[] _cipher;
+    /** Scores decryptions. */
+    private final Scorer _scorer;
+    /** _core[K * _size + C] is the core's conversion of C at position
+     *  K. */
+    private final int[] _core;
+    /** Each letter's partner on the plugboard. */
+    private final int[] _plug;
+    /** Letters whose partners the last swap changed, and their old
+     *  partners, in the first _letterCount entries. */
+    private final int[] _letters = new int[4], _oldPartners = new int[4];
+    /** See _letters. */
+    private int _letterCount;
+    /** The decryption with the current plugboard. */
+    private int[] _text;
+    /** The decryption before the last swap. */
+    private int[] _saved;
+    /** Score of _text. */
+    private double _score;
+    /** Score before the last swap. */
+    private double _oldScore;
+    /** True iff undo() may be called. */
+    private boolean _undoable;
+}
@@ -0,0 +1,129 @@
+package enigma;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the PlugboardSolver class.
+ *  @author Vishal Bansal
+ */
+public class PlugboardSolverTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a naval machine with rotors B, Beta, III, IV and I set to
+     *  AXLE, and no plugboard. */
+    private Machine machine() {
+        Machine mach = TestUtils.navalMachine(5, 3, "B", "Beta", "III:V",
+                "IV:J", "I:Q");
+        mach.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        mach.setRotors("AXLE");
+        mach.setPlugboard(new Permutation("", TestUtils.UPPER));
+        return mach;
+    }
+
+    /** Return a trigram model of upper-case letters with random
+     *  log-probabilities. */
+    private NgramModel model() {
+        Random random = new Random(26);
+        float[][] tables = new float[3][];
+        for (int k = 0; k < 3; k++) {
+            tables[k] = new float[(int) Math.pow(26, k + 1)];
+            for (int i = 0; i < tables[k].length; i++) {
+                tables[k][i] = -10 * random.nextFloat();
+            }
+        }
+        return new NgramModel(TestUtils.UPPER, tables);
+    }
+
+    /** Return LENGTH random letters, as indices. */
+    private int[] cipher(int length) {
+        Random random = new Random(length);
+        int[] result = new int[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = random.nextInt(26);
+        }
+        return result;
+    }
+
+    /** Return PLUG, a plugboard as each letter's partner, as cycles. */
+    private String cycles(int[] plug) {
+        StringBuilder result = new StringBuilder();
+        for (int c = 0; c < plug.length; c++) {
+            if (plug[c] > c) {
+                result.append('(').append((char) ('A' + c))
+                    .append((char) ('A' + plug[c])).append(')');
+            }
+        }
+        return result.toString();
+    }
+
+    /** Check that SOLVER's decryption of CIPHER and its score under
+     *  SCORER are those of MACH, set to AXLE, with SOLVER's plugboard. */
+    private void checkSolver(PlugboardSolver solver, Machine mach,
+                             Scorer scorer, int[] cipher) {
+        int[] plug = solver.plugboard();
+        mach.setPlugboard(new Permutation(cycles(plug), TestUtils.UPPER));
+        mach.setRotors("AXLE");
+        int[] text = new int[cipher.length];
+        for (int k = 0; k < cipher.length; k++) {
+            text[k] = mach.convert(cipher[k]);
+            assertEquals("position " + k, text[k], solver.text()[k]);
+        }
+        assertEquals(scorer.score(text, text.length), solver.score(), 0);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testMatchesMachine() {
+        Machine mach = machine();
+        NgramModel model = model();
+        int[] cipher = cipher(200);
+        PlugboardSolver solver = new PlugboardSolver(mach, cipher, model);
+        checkSolver(solver, mach, model, cipher);
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            int a = random.nextInt(26), b = random.nextInt(25);
+            b = b >= a ? b + 1 : b;
+            solver.swap(a, b);
+            if (random.nextBoolean()) {
+                solver.undo();
+            }
+            checkSolver(solver, mach, model, cipher);
+        }
+    }
+
+    @Test
+    public void testSwapAndUndo() {
+        Machine mach = machine();
+        NgramModel model = model();
+        PlugboardSolver solver =
+            new PlugboardSolver(mach, cipher(50), model);
+        double empty = solver.score();
+        solver.swap(0, 1);
+        solver.swap(1, 2);
+        assertEquals("(BC)", cycles(solver.plugboard()));
+        solver.undo();
+        assertEquals("(AB)", cycles(solver.plugboard()));
+        solver.swap(0, 1);
+        assertEquals("", cycles(solver.plugboard()));
+        assertEquals(empty, solver.score(), 0);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testUndoTwice() {
+        PlugboardSolver solver =
+            new PlugboardSolver(machine(), cipher(10), model());
+        solver.swap(3, 4);
+        solver.undo();
+        solver.undo();
+    }
+}
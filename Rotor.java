@@ -5,17 +5,65 @@ import static enigma.EnigmaException.*;
 /** Superclass that represents a rotor in the enigma machine.
  *  @author Vishal Bansal
  */
-class Rotor {
+class Rotor implements Cloneable {
     /**Name of the Rotor. */
     private final String _name;
     /**Rotor's Permutation. */
     private Permutation _permutation;
     /**Rotor's current setting. */
     private int _curr;
+    /**Rotor's ring setting. */
+    private int _ring;
+    /**_forward[K][P] is the forward conversion of P when the rotor's
+     * setting is K positions ahead of its ring setting. */
+    private final int[][] _forward;
+    /**_backward[K][E] is the backward conversion of E when the rotor's
+     * setting is K positions ahead of its ring setting. */
+    private final int[][] _backward;
+    /**Rows of _forward and _backward for the current setting and ring. */
+    private int[] _forwardRow, _backwardRow;
+    /**_notchesBelow[K] is the number of notches at settings less than K.
+     * Computed when first needed. */
+    private int[] _notchesBelow;
+    /**The settings that are not notches, in increasing order. */
+    private int[] _restSettings;
+    /**The positions of my notches, as given to my constructor. */
+    private final String _notches;
+    /**Bit K % 64 of _notchMask[K / 64] is set iff setting K is a notch. */
+    private final long[] _notchMask;
+
+    /** A rotor named NAME whose permutation in its default setting is
+     *  PERM, with no notches. */
     Rotor(String name, Permutation perm) {
+        this(name, perm, "");
+    }
+
+    /** A rotor named NAME whose permutation in its default setting is
+     *  PERM, and whose notches are at the positions indicated in
+     *  NOTCHES. */
+    Rotor(String name, Permutation perm, String notches) {
         _name = name;
         _permutation = perm;
+        _notches = notches;
+        int size = perm.size();
+        _notchMask = new long[(size + 63) >>> 6];
+        for (int i = 0; i < notches.length(); i++) {
+            int k = perm.alphabet().toInt(notches.charAt(i));
+            if (k != -1) {
+                _notchMask[k >>> 6] |= 1L << k;
+            }
+        }
+        _forward = new int[size][size];
+        _backward = new int[size][size];
+        for (int k = 0; k < size; k++) {
+            for (int p = 0; p < size; p++) {
+                _forward[k][p] = perm.wrap(perm.permute(p + k) - k);
+                _backward[k][p] = perm.wrap(perm.invert(p + k) - k);
+            }
+        }
         _curr = 0;
+        _ring = 0;
+        selectRows();
     }
 
     /** Return my name. */
@@ -56,52 +104,123 @@ class Rotor {
     /** Set setting() to POSN.  */
     void set(int posn) {
         _curr = permutation().wrap(posn);
+        selectRows();
     }
 
     /** Set setting() to character CPOSN. */
     void set(char cposn) {
-        _curr = permutation().alphabet().toInt(cposn);
+        set(permutation().alphabet().toInt(cposn));
+    }
+
+    /** Return my ring setting. */
+    int ring() {
+        return _ring;
+    }
+
+    /** Set ring() to RING.  The ring offsets my wiring relative to my
+     *  setting but leaves my notches where they are. */
+    void setRing(int ring) {
+        _ring = permutation().wrap(ring);
+        selectRows();
+    }
+
+    /** Point _forwardRow and _backwardRow at the tables for the current
+     *  setting and ring. */
+    private void selectRows() {
+        int offset = _curr - _ring;
+        if (offset < 0) {
+            offset += _forward.length;
+        }
+        _forwardRow = _forward[offset];
+        _backwardRow = _backward[offset];
+    }
+
+    /** Advance setting() by one position, wrapping around.  Allocates
+     *  nothing and takes constant time. */
+    final void step() {
+        _curr += 1;
+        if (_curr == _forward.length) {
+            _curr = 0;
+        }
+        selectRows();
     }
 
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
-        int result = permutation().permute(permutation().wrap(p + setting()));
-        result = result - setting();
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(result));
-        }
-        return permutation().wrap(result);
+        return _forwardRow[p];
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
-        int result = permutation().invert(permutation().wrap(e + setting()));
-        result = result - setting();
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(result));
-        }
-        return permutation().wrap(result);
+        return _backwardRow[e];
     }
 
     /** Returns the positions of the notches, as a string giving the letters
      *  on the ring at which they occur. */
     String notches() {
-        return "";
+        return _notches;
     }
 
-    void setNotches(String notches) { }
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
-        return notches().indexOf(alphabet().toChar(_curr)) != -1;
+        return (_notchMask[_curr >>> 6] & (1L << _curr)) != 0;
+    }
+
+    /** Returns true iff setting POSN is one of my notches. */
+    boolean notchAt(int posn) {
+        return (_notchMask[posn >>> 6] & (1L << posn)) != 0;
+    }
+
+    /** Returns the number of my notches at settings less than POSN, where
+     *  0 <= POSN <= size(). */
+    int notchesBelow(int posn) {
+        if (_notchesBelow == null) {
+            countNotches();
+        }
+        return _notchesBelow[posn];
+    }
+
+    /** Returns my K-th setting, counting from 0, that is not a notch. */
+    int restSetting(int k) {
+        if (_notchesBelow == null) {
+            countNotches();
+        }
+        return _restSettings[k];
+    }
+
+    /** Fill in _notchesBelow and _restSettings from my notches. */
+    private void countNotches() {
+        int[] below = new int[size() + 1];
+        int[] rest = new int[size()];
+        for (int k = 0; k < size(); k++) {
+            boolean notch = notchAt(k);
+            below[k + 1] = below[k] + (notch ? 1 : 0);
+            if (!notch) {
+                rest[k - below[k]] = k;
+            }
+        }
+        _restSettings = rest;
+        _notchesBelow = below;
     }
 
     /** Advance me one position, if possible. By default, does nothing. */
     void advance() {
     }
 
+    /** Return a new rotor with my name, wiring and notches whose setting
+     *  and ring start out equal to mine but change independently.  The
+     *  copy shares my conversion tables. */
+    Rotor copy() {
+        try {
+            return (Rotor) clone();
+        } catch (CloneNotSupportedException excp) {
+            throw new AssertionError(excp);
+        }
+    }
+
     @Override
     public String toString() {
         return "Rotor " + _name;
@@ -0,0 +1,323 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The rotors available to a machine, indexed by name.
+ *
+ *  A registry read from a configuration records, for each rotor, its
+ *  name, type and notches, and where in the configuration its wiring is
+ *  described, but builds its permutation and conversion tables only when
+ *  the rotor is first asked for.  Rotors built this way are kept in a
+ *  cache of bounded size, from which the least recently used is dropped
+ *  when it is full, so that a library of many thousands of rotors costs
+ *  little more than the few that are used.  A dropped rotor is built again
+ *  if it is needed again; machines holding it are not affected.
+ *
+ *  Rotors are numbered from 0 in the order they were added.  Looking up a
+ *  name takes constant time and allocates nothing.  The methods of a
+ *  registry may be called from several threads at once.
+ *  @author Vishal Bansal
+ */
+final class RotorRegistry {
+
+    /** Approximate number of bytes of conversion tables that a registry
+     *  keeps by default. */
+    static final long CACHE_BYTES = 64L << 20;
+    /** Least number of built rotors that a registry keeps by default. */
+    static final int MIN_CACHE_SIZE = 16;
+
+    /** Builds the permutations of rotors from their descriptions. */
+    interface Wiring {
+        /** Return the permutation whose description lies between
+         *  positions START and END of the source of the registry. */
+        Permutation permutation(int start, int end);
+    }
+
+    /** An empty registry of rotors of ALPHABET whose permutations are
+     *  given by WIRING.  It keeps as many built rotors as fit in about
+     *  CACHE_BYTES, and at least MIN_CACHE_SIZE. */
+    RotorRegistry(Alphabet alphabet, Wiring wiring) {
+        _wiring = wiring;
+        _built = new Rotor[0];
+        long size = alphabet.size();
+        _cacheSize = (int) Math.max(MIN_CACHE_SIZE, Math.min(
+                Integer.MAX_VALUE, CACHE_BYTES / (8 * size * (size + 4))));
+    }
+
+    /** A registry of ROTORS, which are already built and are always
+     *  kept. */
+    RotorRegistry(Collection<Rotor> rotors) {
+        _wiring = null;
+        _built = new Rotor[0];
+        _all = rotors;
+        for (Rotor rotor : rotors) {
+            add(rotor.name(), rotor.reflecting() ? 'R'
+                : rotor.rotates() ? 'M' : 'N', rotor.notches(), -1, -1);
+            _built[_size - 1] = rotor;
+        }
+    }
+
+    /** Add a rotor named NAME of type TYPE ('M' for moving, 'N' for
+     *  fixed, 'R' for a reflector) with notches NOTCHES (ignored unless
+     *  TYPE is 'M'), whose wiring is described between positions START
+     *  and END of my source.  A rotor with the name of one added before
+     *  replaces it in lookups by name. */
+    synchronized void add(String name, char type, String notches,
+                          int start, int end) {
+        if (type != 'M' && type != 'N' && type != 'R') {
+            throw error("bad rotor type %c", type);
+        }
+        if (_size == _names.length) {
+            int capacity = Math.max(2 * _size, 8);
+            _names = Arrays.copyOf(_names, capacity);
+            _types = Arrays.copyOf(_types, capacity);
+            _notches = Arrays.copyOf(_notches, capacity);
+            _starts = Arrays.copyOf(_starts, capacity);
+            _ends = Arrays.copyOf(_ends, capacity);
+            _built = Arrays.copyOf(_built, capacity);
+            _newer = Arrays.copyOf(_newer, capacity);
+            _older = Arrays.copyOf(_older, capacity);
+        }
+        _names[_size] = name;
+        _types[_size] = type;
+        _notches[_size] = type == 'M' ? notches : "";
+        _starts[_size] = start;
+        _ends[_size] = end;
+        _newer[_size] = _older[_size] = -1;
+        _size += 1;
+        if (2 * _size > _index.length) {
+            _index = new int[2 * _index.length];
+            for (int k = 0; k < _size; k++) {
+                enter(k);
+            }
+        } else {
+            enter(_size - 1);
+        }
+    }
+
+    /** Enter rotor #K in _index. */
+    private void enter(int k) {
+        int mask = _index.length - 1;
+        int h = hash(_names[k]) & mask;
+        while (_index[h] != 0 && !_names[_index[h] - 1].equals(_names[k])) {
+            h = (h + 1) & mask;
+        }
+        _index[h] = k + 1;
+    }
+
+    /** Return a hash of the characters of NAME, as String.hashCode. */
+    private static int hash(CharSequence name) {
+        int h = 0;
+        for (int i = 0; i < name.length(); i++) {
+            h = 31 * h + name.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /** Return the greatest number of the rotors I build that I keep. */
+    synchronized int cacheSize() {
+        return _cacheSize;
+    }
+
+    /** Keep at most SIZE > 0 of the rotors I build. */
+    synchronized void setCacheSize(int size) {
+        if (size < 1) {
+            throw error("rotor cache must hold at least one rotor");
+        }
+        _cacheSize = size;
+        evict();
+    }
+
+    /** Return the number of rotors I hold. */
+    synchronized int size() {
+        return _size;
+    }
+
+    /** Return the number of the rotor named NAME, or -1 if there is
+     *  none. */
+    synchronized int indexOf(CharSequence name) {
+        int mask = _index.length - 1;
+        for (int h = hash(name) & mask; _index[h] != 0; h = (h + 1) & mask) {
+            if (_names[_index[h] - 1].contentEquals(name)) {
+                return _index[h] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Return the name of rotor #K. */
+    synchronized String name(int k) {
+        check(k);
+        return _names[k];
+    }
+
+    /** Return the type of rotor #K: 'M', 'N' or 'R'. */
+    synchronized char type(int k) {
+        check(k);
+        return _types[k];
+    }
+
+    /** Return the notches of rotor #K. */
+    synchronized String notches(int k) {
+        check(k);
+        return _notches[k];
+    }
+
+    /** Return true iff rotor #K is a reflector. */
+    boolean reflecting(int k) {
+        return type(k) == 'R';
+    }
+
+    /** Return true iff rotor #K moves. */
+    boolean rotates(int k) {
+        return type(k) == 'M';
+    }
+
+    /** Return the permutation of rotor #K, without building the rotor if
+     *  it is not built already. */
+    synchronized Permutation permutation(int k) {
+        check(k);
+        if (_built[k] != null) {
+            return _built[k].permutation();
+        }
+        return _wiring.permutation(_starts[k], _ends[k]);
+    }
+
+    /** Return rotor #K, building it if need be.  Modifying this Rotor
+     *  affects every machine using it without copying it. */
+    synchronized Rotor get(int k) {
+        check(k);
+        if (_wiring == null) {
+            return _built[k];
+        }
+        if (_built[k] == null) {
+            Permutation perm = _wiring.permutation(_starts[k], _ends[k]);
+            switch (_types[k]) {
+            case 'M':
+                _built[k] = new MovingRotor(_names[k], perm, _notches[k]);
+                break;
+            case 'N':
+                _built[k] = new FixedRotor(_names[k], perm);
+                break;
+            default:
+                _built[k] = new Reflector(_names[k], perm);
+                break;
+            }
+            _builds += 1;
+            _cached += 1;
+            Metrics.get().rotorLookup(false);
+        } else {
+            unlink(k);
+            Metrics.get().rotorLookup(true);
+        }
+        link(k);
+        evict();
+        return _built[k];
+    }
+
+    /** Return all my rotors, building each one that is not built. */
+    synchronized Collection<Rotor> all() {
+        if (_all != null) {
+            return _all;
+        }
+        List<Rotor> result = new ArrayList<>();
+        for (int k = 0; k < _size; k++) {
+            result.add(get(k));
+        }
+        return result;
+    }
+
+    /** Return the number of rotors I have built, counting those built
+     *  again after being dropped. */
+    synchronized long builds() {
+        return _builds;
+    }
+
+    /** Return the number of rotors I have built that I still keep. */
+    synchronized int cached() {
+        return _cached;
+    }
+
+    /** Check that K numbers one of my rotors. */
+    private void check(int k) {
+        if (k < 0 || k >= _size) {
+            throw error("no rotor #%d", k);
+        }
+    }
+
+    /** Make rotor #K, which is not in my recency list, the most recently
+     *  used. */
+    private void link(int k) {
+        _older[k] = _newest;
+        _newer[k] = -1;
+        if (_newest != -1) {
+            _newer[_newest] = k;
+        }
+        _newest = k;
+        if (_oldest == -1) {
+            _oldest = k;
+        }
+    }
+
+    /** Remove rotor #K from my recency list. */
+    private void unlink(int k) {
+        if (_newer[k] == -1) {
+            _newest = _older[k];
+        } else {
+            _older[_newer[k]] = _older[k];
+        }
+        if (_older[k] == -1) {
+            _oldest = _newer[k];
+        } else {
+            _newer[_older[k]] = _newer[k];
+        }
+        _newer[k] = _older[k] = -1;
+    }
+
+    /** Drop the least recently used rotors I have built until no more
+     *  than _cacheSize are left. */
+    private void evict() {
+        while (_cached > _cacheSize) {
+            int k = _oldest;
+            unlink(k);
+            _built[k] = null;
+            _cached -= 1;
+        }
+    }
+
+    /** Builds permutations, or null if all my rotors are built. */
+    private final Wiring _wiring;
+    /** The rotors I was given, if I was given them built. */
+    private Collection<Rotor> _all;
+    /** Number of rotors. */
+    private int _size;
+    /** Rotor names by number. */
+    private String[] _names = new String[0];
+    /** Rotor types by number. */
+    private char[] _types = new char[0];
+    /** Rotor notches by number. */
+    private String[] _notches = new String[0];
+    /** Positions of the descriptions of rotors' wirings, by number. */
+    private int[] _starts = new int[0], _ends = new int[0];
+    /** Open-addressed hash table of 1 + the number of each rotor name,
+     *  or 0. */
+    private int[] _index = new int[16];
+    /** _built[K] is rotor #K, or null if it is not built. */
+    private Rotor[] _built;
+    /** The most and least recently used built rotors, or -1. */
+    private int _newest = -1, _oldest = -1;
+    /** _newer[K] and _older[K] are the built rotors used next after and
+     *  before rotor #K, or -1. */
+    private int[] _newer = new int[0], _older = new int[0];
+    /** Number of rotors I have built and keep. */
+    private int _cached;
+    /** Greatest number of built rotors kept. */
+    private int _cacheSize;
+    /** Number of rotors built. */
+    private long _builds;
+}
@@ -0,0 +1,139 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the RotorRegistry class.
+ *  @author Vishal Bansal
+ */
+public class RotorRegistryTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    /** Names of the rotors in registry(). */
+    private static final String[] NAMES = { "B", "Beta", "I", "II", "III" };
+
+    /** Return a registry of the rotors named NAMES, wired as in
+     *  TestUtils.NAVALA and described in a single string. */
+    private RotorRegistry registry() {
+        StringBuilder text = new StringBuilder();
+        int[] starts = new int[NAMES.length + 1];
+        for (int r = 0; r < NAMES.length; r++) {
+            starts[r] = text.length();
+            text.append(TestUtils.NAVALA.get(NAMES[r]));
+        }
+        starts[NAMES.length] = text.length();
+        RotorRegistry result = new RotorRegistry(AZ, (start, end) ->
+            new Permutation(text.subSequence(start, end), AZ));
+        for (int r = 0; r < NAMES.length; r++) {
+            char type = r == 0 ? 'R' : r == 1 ? 'N' : 'M';
+            result.add(NAMES[r], type, "Q", starts[r], starts[r + 1]);
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testLookup() {
+        RotorRegistry reg = registry();
+        assertEquals(5, reg.size());
+        for (int r = 0; r < NAMES.length; r++) {
+            assertEquals(r, reg.indexOf(NAMES[r]));
+            assertEquals(NAMES[r], reg.name(r));
+        }
+        assertEquals(-1, reg.indexOf("IV"));
+        assertTrue(reg.reflecting(0));
+        assertFalse(reg.rotates(1));
+        assertEquals("", reg.notches(1));
+        assertEquals("Q", reg.notches(2));
+        reg.add("I", 'M', "V", 0, 0);
+        assertEquals(5, reg.indexOf("I"));
+        assertEquals(0, reg.builds());
+    }
+
+    @Test
+    public void testLazyBuild() {
+        RotorRegistry reg = registry();
+        assertEquals(0, reg.cached());
+        Rotor rotor = reg.get(2);
+        assertEquals("I", rotor.name());
+        assertTrue(rotor instanceof MovingRotor);
+        assertEquals(4, rotor.convertForward(0));
+        assertSame(rotor, reg.get(2));
+        assertSame(rotor.permutation(), reg.permutation(2));
+        assertEquals(1, reg.builds());
+        assertEquals(23, reg.permutation(3).permute(8));
+        assertEquals(1, reg.builds());
+        assertTrue(reg.get(0) instanceof Reflector);
+        assertEquals(2, reg.cached());
+    }
+
+    @Test
+    public void testEviction() {
+        RotorRegistry reg = registry();
+        reg.setCacheSize(2);
+        Rotor b = reg.get(0);
+        Rotor beta = reg.get(1);
+        assertSame(b, reg.get(0));
+        reg.get(2);
+        assertEquals(2, reg.cached());
+        assertSame(b, reg.get(0));
+        assertEquals(3, reg.builds());
+        assertNotSame(beta, reg.get(1));
+        assertEquals(4, reg.builds());
+        reg.setCacheSize(1);
+        assertEquals(1, reg.cached());
+        reg.get(1);
+        assertEquals(4, reg.builds());
+    }
+
+    @Test
+    public void testConfigBuildsOnUse() throws IOException {
+        File config = File.createTempFile("config", ".conf");
+        config.deleteOnExit();
+        StringBuilder text = new StringBuilder(AZ + "\n4 2\n");
+        for (String name : NAMES) {
+            char type = name.equals("B") ? 'R'
+                : name.equals("Beta") ? 'N' : 'M';
+            text.append(String.format("%s %cQ %s%n", name, type,
+                    TestUtils.NAVALA.get(name)));
+        }
+        Files.write(config.toPath(), text.toString().getBytes("US-ASCII"));
+        Machine mach = Main.loadText(config.getPath());
+        assertEquals(0, mach.registry().builds());
+        mach.insertRotors(new String[] { "B", "Beta", "III", "I" });
+        assertEquals(4, mach.registry().builds());
+        mach.setRotors("AXL");
+        mach.setPlugboard(new Permutation("", AZ));
+        Machine eager = new Machine(AZ, 4, 2, List.of(
+                new Reflector("B",
+                        new Permutation(TestUtils.NAVALA.get("B"), AZ)),
+                new FixedRotor("Beta",
+                        new Permutation(TestUtils.NAVALA.get("Beta"), AZ)),
+                new MovingRotor("III",
+                        new Permutation(TestUtils.NAVALA.get("III"), AZ),
+                        "Q"),
+                new MovingRotor("I",
+                        new Permutation(TestUtils.NAVALA.get("I"), AZ),
+                        "Q")));
+        eager.insertRotors(new String[] { "B", "Beta", "III", "I" });
+        eager.setRotors("AXL");
+        eager.setPlugboard(new Permutation("", AZ));
+        String msg = "FROMHISSHOULDERHIAWATHA";
+        assertEquals(eager.convert(msg), mach.convert(msg));
+    }
+}
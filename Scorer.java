@@ -0,0 +1,34 @@
+package enigma;
+
+/** A measure of how much a candidate decryption looks like plaintext.
+ *  Texts are given as arrays of character indices in some alphabet.
+ *  @author Vishal Bansal
+ */
+interface Scorer {
+
+    /** Return the score of the first LENGTH characters of TEXT, which are
+     *  indices in an alphabet.  Higher scores are more plaintext-like. */
+    double score(int[] text, int length);
+
+    /** Return a scorer giving the index of coincidence of texts in an
+     *  alphabet of SIZE characters: the chance that two distinct positions
+     *  chosen at random hold the same character.  It needs no language
+     *  statistics and rises as a decryption approaches the right key even
+     *  when the plugboard is still wrong. */
+    static Scorer indexOfCoincidence(int size) {
+        return (text, length) -> {
+            if (length < 2) {
+                return 0.0;
+            }
+            int[] counts = new int[size];
+            for (int k = 0; k < length; k++) {
+                counts[text[k]] += 1;
+            }
+            long same = 0;
+            for (int count : counts) {
+                same += (long) count * (count - 1);
+            }
+            return (double) same / ((long) length * (length - 1));
+        };
+    }
+}
@@ -0,0 +1,211 @@
+package enigma;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static enigma.EnigmaException.*;
+
+/** An Enigma simulator that stays running and serves requests over a
+ *  local socket, so that short jobs pay neither JVM start-up nor the
+ *  reading of the configuration nor JIT warm-up.
+ *
+ *  A server reads its configuration once, and keeps it and the tables of
+ *  the rotors it has built (see RotorRegistry) for all its requests.  Each
+ *  connection carries one request: input in the format read by Main,
+ *  settings lines and message lines, ended when the client shuts down its
+ *  side of the connection.  The server replies with exactly the output
+ *  Main would write for that input and closes the connection; if the
+ *  input is in error, the reply ends with a line "Error: " followed by
+ *  the message.  Input and output are in UTF-8.
+ *
+ *  Each connection is served on a thread of its own, with its own fork of
+ *  the configured machine, and with buffers small enough that thousands
+ *  may be open at once.  The threads are virtual threads where the JVM
+ *  provides them, and otherwise come from a pool that grows as needed.
+ *  @author Vishal Bansal
+ */
+final class Server implements Closeable {
+
+    /** Default TCP port. */
+    static final int DEFAULT_PORT = 7261;
+    /** Size of the blocks in which each connection is read and written,
+     *  in bytes. */
+    static final int BLOCK_SIZE = 1 << 13;
+    /** Number of connections that may wait to be accepted. */
+    private static final int BACKLOG = 1 << 12;
+    /** Encoding of requests and replies. */
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    /** A server for machines configured as CONFIG, which is not used
+     *  otherwise, listening at ADDRESS: a local TCP address (port 0 for
+     *  any free port) or the path of a Unix domain socket, which must not
+     *  exist. */
+    Server(Machine config, SocketAddress address) throws IOException {
+        _config = config;
+        if (address instanceof UnixDomainSocketAddress) {
+            _channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            _socketFile = (UnixDomainSocketAddress) address;
+        } else {
+            _channel = ServerSocketChannel.open();
+            _socketFile = null;
+        }
+        _channel.bind(address, BACKLOG);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        _virtualThreads = virtual != null;
+        _workers = _virtualThreads ? virtual
+            : Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "enigma-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /** Return the address at which I listen. */
+    SocketAddress address() throws IOException {
+        return _channel.getLocalAddress();
+    }
+
+    /** Return true iff I serve connections on virtual threads, rather
+     *  than on a pool of daemon threads that grows as needed. */
+    boolean virtualThreads() {
+        return _virtualThreads;
+    }
+
+    /** Accept and serve connections until I am closed. */
+    void serve() {
+        while (_channel.isOpen()) {
+            SocketChannel connection;
+            try {
+                connection = _channel.accept();
+            } catch (ClosedChannelException excp) {
+                break;
+            } catch (IOException excp) {
+                System.err.printf("Error: could not accept: %s%n",
+                        excp.getMessage());
+                continue;
+            }
+            _workers.execute(() -> handle(connection));
+        }
+    }
+
+    /** Stop accepting connections.  Connections already accepted are
+     *  served to the end. */
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+        _workers.shutdown();
+        if (_socketFile != null) {
+            Files.deleteIfExists(_socketFile.getPath());
+        }
+    }
+
+    /** Serve the request on CONNECTION and close it. */
+    private void handle(SocketChannel connection) {
+        try (connection) {
+            OutputStream out = Channels.newOutputStream(connection);
+            Machine machine = _config.fork();
+            StreamProcessor processor = new StreamProcessor(machine,
+                    settings -> Main.setUp(machine, settings), CHARSET,
+                    BLOCK_SIZE);
+            try {
+                processor.process(connection, out);
+            } catch (EnigmaException excp) {
+                out.write(String.format("Error: %s%n", excp.getMessage())
+                          .getBytes(CHARSET));
+            }
+        } catch (IOException excp) {
+            /* The client has gone, so there is no one to tell. */
+        }
+    }
+
+    /** Return an executor that runs each task on a new virtual thread, or
+     *  null if this JVM does not provide them.  The executor is found
+     *  reflectively so that the simulator still builds and runs on
+     *  releases that predate it. */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException
+                 excp) {
+            return null;
+        }
+    }
+
+    /** Serve requests for the configuration named by ARGS, which may be
+     *  preceded by the options --port=N, the local TCP port to listen on
+     *  (by default DEFAULT_PORT), --socket=PATH, a Unix domain socket to
+     *  listen on instead, and --metrics=S, as for Main. */
+    public static void main(String... args) {
+        try {
+            List<String> files = new ArrayList<>();
+            int port = DEFAULT_PORT;
+            String socket = null;
+            long metrics = -1;
+            for (String arg : args) {
+                if (arg.startsWith("--port=")) {
+                    port = Integer.parseInt(arg.substring(7));
+                } else if (arg.startsWith("--socket=")) {
+                    socket = arg.substring(9);
+                } else if (arg.startsWith("--metrics=")) {
+                    metrics = Long.parseLong(arg.substring(10));
+                } else {
+                    files.add(arg);
+                }
+            }
+            if (files.size() != 1) {
+                throw error("Usage: java enigma.Server [--port=N] "
+                        + "[--socket=PATH] [--metrics=S] CONFIG");
+            }
+            Machine config = Main.loadConfig(files.get(0));
+            if (metrics >= 0) {
+                Main.startMetrics(metrics);
+            }
+            SocketAddress address = socket != null
+                ? UnixDomainSocketAddress.of(Paths.get(socket))
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                        port);
+            try (Server server = new Server(config, address)) {
+                System.err.printf("Listening on %s (%s threads)%n",
+                        server.address(),
+                        server.virtualThreads() ? "virtual" : "pooled");
+                server.serve();
+            }
+            return;
+        } catch (EnigmaException | NumberFormatException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        } catch (IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** The configured machine whose forks serve connections. */
+    private final Machine _config;
+    /** Listens for connections. */
+    private final ServerSocketChannel _channel;
+    /** The Unix domain socket listened on, or null. */
+    private final UnixDomainSocketAddress _socketFile;
+    /** True iff _workers runs each task on a new virtual thread. */
+    private final boolean _virtualThreads;
+    /** Runs the handlers of connections. */
+    private final ExecutorService _workers;
+}
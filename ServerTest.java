@@ -0,0 +1,133 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Server class.
+ *  @author Vishal Bansal
+ */
+public class ServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a naval machine with rotors B, Beta, III and IV available,
+     *  and no rotors inserted. */
+    private Machine config() {
+        return new Machine(TestUtils.UPPER, 4, 2, List.of(
+                new Reflector("B", new Permutation(
+                        TestUtils.NAVALA.get("B"), TestUtils.UPPER)),
+                new FixedRotor("Beta", new Permutation(
+                        TestUtils.NAVALA.get("Beta"), TestUtils.UPPER)),
+                new MovingRotor("III", new Permutation(
+                        TestUtils.NAVALA.get("III"), TestUtils.UPPER), "V"),
+                new MovingRotor("IV", new Permutation(
+                        TestUtils.NAVALA.get("IV"), TestUtils.UPPER), "J")));
+    }
+
+    /** Start serving connections to SERVER on a daemon thread. */
+    private void start(Server server) {
+        Thread thread = new Thread(server::serve);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Return the reply of the server at ADDRESS to REQUEST. */
+    private String request(SocketAddress address, String request)
+        throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            channel.write(ByteBuffer.wrap(
+                    request.getBytes(StandardCharsets.UTF_8)));
+            channel.shutdownOutput();
+            ByteArrayOutputStream reply = new ByteArrayOutputStream();
+            ByteBuffer buffer = ByteBuffer.allocate(64);
+            while (channel.read(buffer) != -1) {
+                reply.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            return reply.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Return TEXT with each newline replaced by the line separator. */
+    private String lines(String text) {
+        return text.replace("\n", System.lineSeparator());
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testTcp() throws IOException {
+        try (Server server = new Server(config(), new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), 0))) {
+            start(server);
+            SocketAddress address = server.address();
+            String request = "* B Beta III IV AXL (YF) (ZH)\n"
+                + "HELLO WORLD\n\n* B Beta IV III AAA\nFROM HIS\n";
+            Machine mach = config();
+            Main.setUp(mach, "* B Beta III IV AXL (YF) (ZH)");
+            String first = mach.convert("HELLOWORLD");
+            Main.setUp(mach, "* B Beta IV III AAA");
+            String second = mach.convert("FROMHIS");
+            String expected = lines(first.substring(0, 5) + " "
+                    + first.substring(5) + " \n\n" + second.substring(0, 5)
+                    + " " + second.substring(5) + "\n");
+            assertEquals(expected, request(address, request));
+            assertEquals(expected, request(address, request));
+        }
+    }
+
+    @Test
+    public void testUnixSocketAndErrors() throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        Path path = dir.resolve("enigma.sock");
+        try (Server server = new Server(config(),
+                UnixDomainSocketAddress.of(path))) {
+            start(server);
+            SocketAddress address = server.address();
+            assertEquals(lines("Error: Missing setting\n"),
+                    request(address, "HELLO\n"));
+            assertEquals(lines("Error: Bad rotor name\n"),
+                    request(address, "* B Beta III V AAA\nHELLO\n"));
+        }
+        assertFalse(Files.exists(path));
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testOutputBeforeError() throws IOException {
+        try (Server server = new Server(config(), new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), 0))) {
+            start(server);
+            Machine mach = config();
+            Main.setUp(mach, "* B Beta III IV AXL (YF) (ZH)");
+            String first = mach.convert("HELLOWORLD");
+            String second = mach.convert("FROMHERE");
+            assertEquals(lines(first.substring(0, 5) + " " + first.substring(5)
+                    + " \n" + second.substring(0, 5) + " "
+                    + second.substring(5) + "\n\n"
+                    + "Error: character 1 not in alphabet\n"),
+                    request(server.address(),
+                            "* B Beta III IV AXL (YF) (ZH)\nHELLO WORLD\n"
+                            + "FROM HERE\n\nBAD 123\nMORE\n"));
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static enigma.EnigmaException.*;
+
+/** Applies a machine to a stream of settings and message lines in the
+ *  format read by Main, producing exactly the output of Main.process.
+ *  Input is read in large blocks from a channel, and bytes of an
+ *  ASCII-compatible charset are handled directly without decoding or
+ *  creating strings.  Converted characters are grouped straight into a
+ *  reusable output buffer, so memory use does not depend on the size of
+ *  the input.  Lines end where Scanner.nextLine would end them, and a
+ *  surrogate pair in the output is encoded as one character.
+ *  @author Vishal Bansal
+ */
+final class StreamProcessor {
+
+    /** Default size of input and output blocks, in bytes. */
+    static final int BLOCK_SIZE = 1 << 20;
+
+    /** Line state: at the start of a line. */
+    private static final int START = 0;
+    /** Line state: in a settings line. */
+    private static final int SETTINGS = 1;
+    /** Line state: in a message line. */
+    private static final int MESSAGE = 2;
+
+    /** A processor that applies MACHINE to messages and passes each
+     *  settings line to SETTINGS, which must configure MACHINE accordingly.
+     *  Input and output are encoded in CHARSET, and read and written in
+     *  blocks of BLOCK_SIZE bytes. */
+    StreamProcessor(Machine machine, Consumer<String> settings,
+                    Charset charset) {
+        this(machine, settings, charset, BLOCK_SIZE);
+    }
+
+    /** A processor as for StreamProcessor(MACHINE, SETTINGS, CHARSET)
+     *  that reads and writes in blocks of BLOCKSIZE bytes. */
+    StreamProcessor(Machine machine, Consumer<String> settings,
+                    Charset charset, int blockSize) {
+        _bytes = ByteBuffer.allocateDirect(blockSize);
+        _chars = CharBuffer.allocate(blockSize);
+        _output = ByteBuffer.allocate(blockSize);
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _settings = settings;
+        _ascii = charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+        _decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _newline = System.lineSeparator().getBytes(charset);
+    }
+
+    /** Read all of IN, writing the results to OUT.  If the input is in
+     *  error, the output of the lines before the one in error is written
+     *  before the exception is thrown, as by Main.process, except that a
+     *  line longer than an output block may already be partly written. */
+    void process(ReadableByteChannel in, OutputStream out)
+        throws IOException {
+        start(out);
+        int count;
+        try {
+            while ((count = in.read(_bytes)) != -1) {
+                _bytesIn += count;
+                decode(false);
+            }
+        } catch (EnigmaException excp) {
+            flushLines();
+            throw excp;
+        }
+        finish();
+    }
+
+    /** Start a stream whose results are written to OUT, to be given to me
+     *  in parts by feed and ended by finish.  The output for each part is
+     *  written before feed returns, so that the results of a stream that
+     *  arrives slowly are not held back. */
+    void start(OutputStream out) {
+        _out = out;
+        _output.clear();
+        _lineEnd = 0;
+        _bytes.clear();
+        _one.clear();
+        _encoder.reset();
+        _state = START;
+        _afterReturn = false;
+        _configured = false;
+        _bytesIn = _lines = _converted = 0;
+    }
+
+    /** Process the bytes remaining in IN, the next part of the stream
+     *  begun by start, and write their results.  A line, or a character,
+     *  may be split between parts.  Errors are reported as by process,
+     *  after the output of the lines before the one in error. */
+    void feed(ByteBuffer in) {
+        _bytesIn += in.remaining();
+        try {
+            while (in.hasRemaining()) {
+                int count = Math.min(in.remaining(), _bytes.remaining());
+                _bytes.put(in.slice().limit(count));
+                in.position(in.position() + count);
+                decode(false);
+            }
+        } catch (EnigmaException excp) {
+            flushLines();
+            throw excp;
+        }
+        flush();
+    }
+
+    /** End the stream begun by start, writing the rest of its results.
+     *  Errors are reported as by process. */
+    void finish() {
+        try {
+            decode(true);
+            if (_state != START) {
+                endLine();
+            }
+        } catch (EnigmaException excp) {
+            flushLines();
+            throw excp;
+        }
+        flush();
+        _machine.reportConverted(_converted);
+        Metrics.get().processed(_lines, _bytesIn);
+    }
+
+    /** Process the bytes in the input block, where EOF is true iff there
+     *  are no more, leaving only the bytes of an incomplete character in
+     *  the block. */
+    private void decode(boolean eof) {
+        _bytes.flip();
+        if (_ascii && isAscii(_bytes)) {
+            for (int i = _bytes.position(); i < _bytes.limit(); i++) {
+                accept((char) _bytes.get(i));
+            }
+            _bytes.position(_bytes.limit());
+        } else {
+            _chars.clear();
+            _decoder.decode(_bytes, _chars, eof);
+            if (eof) {
+                _decoder.flush(_chars);
+                _decoder.reset();
+            }
+            _chars.flip();
+            while (_chars.hasRemaining()) {
+                accept(_chars.get());
+            }
+        }
+        _bytes.compact();
+    }
+
+    /** Return true iff every byte remaining in BYTES is an ASCII
+     *  character. */
+    private static boolean isAscii(ByteBuffer bytes) {
+        for (int i = bytes.position(); i < bytes.limit(); i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return true iff C ends a line, as for Scanner.nextLine. */
+    private static boolean isLineEnd(char c) {
+        return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029'
+            || c == '\u0085';
+    }
+
+    /** Process the next input character C. */
+    private void accept(char c) {
+        if (c == '\n' && _afterReturn) {
+            _afterReturn = false;
+            return;
+        }
+        _afterReturn = c == '\r';
+        if (isLineEnd(c)) {
+            endLine();
+            return;
+        }
+        switch (_state) {
+        case START:
+            if (c == '*') {
+                _state = SETTINGS;
+                _line.setLength(0);
+                _line.append(c);
+                return;
+            }
+            if (!_configured) {
+                throw error("Missing setting");
+            }
+            _state = MESSAGE;
+            _count = 0;
+            message(c);
+            break;
+        case SETTINGS:
+            _line.append(c);
+            break;
+        default:
+            message(c);
+            break;
+        }
+    }
+
+    /** Convert the message character C and write it to the output, in
+     *  groups of five. */
+    private void message(char c) {
+        if (c == ' ') {
+            return;
+        }
+        int index = _alphabet.toInt(c);
+        if (index == -1) {
+            throw error("character %c not in alphabet", c);
+        }
+        if (_count > 0 && _count % 5 == 0) {
+            write(' ');
+        }
+        write(_alphabet.toChar(_machine.convert(index)));
+        _count += 1;
+    }
+
+    /** Finish the current line. */
+    private void endLine() {
+        _lines += 1;
+        if (_state == SETTINGS) {
+            _settings.accept(_line.toString());
+            _configured = true;
+        } else {
+            if (_state == MESSAGE) {
+                _converted += _count;
+            }
+            if (_state == MESSAGE && _count >= 5 && _count % 5 == 0) {
+                write(' ');
+            }
+            endChars();
+            if (_output.remaining() < _newline.length) {
+                flush();
+            }
+            _output.put(_newline);
+            _lineEnd = _output.position();
+        }
+        _state = START;
+    }
+
+    /** Append C to the output buffer.  A high surrogate is held back
+     *  until the next character, so that a surrogate pair is encoded as
+     *  one character. */
+    private void write(char c) {
+        if (_output.remaining() < MAX_CHAR_BYTES) {
+            flush();
+        }
+        if (_ascii && c < 0x80 && _one.position() == 0) {
+            _output.put((byte) c);
+        } else {
+            _one.put(c).flip();
+            _encoder.encode(_one, _output, false);
+            _one.compact();
+        }
+    }
+
+    /** Append a high surrogate held back by write, which ends its line
+     *  without a low surrogate, to the output buffer as a replacement. */
+    private void endChars() {
+        if (_one.position() > 0) {
+            if (_output.remaining() < MAX_CHAR_BYTES) {
+                flush();
+            }
+            _one.flip();
+            _encoder.encode(_one, _output, true);
+            _encoder.reset();
+            _one.clear();
+        }
+    }
+
+    /** Write the output of the lines finished so far to the output
+     *  stream, and drop that of the current line, which is in error. */
+    private void flushLines() {
+        _output.position(_lineEnd);
+        _one.clear();
+        _encoder.reset();
+        flush();
+    }
+
+    /** Write the output buffer to the output stream. */
+    private void flush() {
+        try {
+            if (_output.position() > 0) {
+                _out.write(_output.array(), 0, _output.position());
+            }
+            _out.flush();
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+        _output.clear();
+        _lineEnd = 0;
+    }
+
+    /** Most bytes needed to encode one character. */
+    private static final int MAX_CHAR_BYTES = 8;
+
+    /** The machine applied to messages. */
+    private final Machine _machine;
+    /** Alphabet of _machine. */
+    private final Alphabet _alphabet;
+    /** Receives each settings line. */
+    private final Consumer<String> _settings;
+    /** True iff ASCII bytes may be used as characters directly. */
+    private final boolean _ascii;
+    /** Decoder for non-ASCII input. */
+    private final CharsetDecoder _decoder;
+    /** Encoder for non-ASCII output. */
+    private final CharsetEncoder _encoder;
+    /** Encoded line separator. */
+    private final byte[] _newline;
+    /** Input block. */
+    private final ByteBuffer _bytes;
+    /** Decoded input block. */
+    private final CharBuffer _chars;
+    /** Output block. */
+    private final ByteBuffer _output;
+    /** Characters being encoded: a held back high surrogate, if any, and
+     *  the character after it. */
+    private final CharBuffer _one = CharBuffer.allocate(2);
+    /** Text of the current settings line. */
+    private final StringBuilder _line = new StringBuilder();
+    /** Destination of output. */
+    private OutputStream _out;
+    /** Position in _output after the last finished line. */
+    private int _lineEnd;
+    /** One of START, SETTINGS or MESSAGE. */
+    private int _state;
+    /** True iff the last character read was a carriage return. */
+    private boolean _afterReturn;
+    /** True iff a settings line has been seen. */
+    private boolean _configured;
+    /** Number of characters written on the current message line. */
+    private int _count;
+    /** Number of bytes read, of lines ended, and of characters converted
+     *  in the current stream. */
+    private long _bytesIn, _lines, _converted;
+}
@@ -0,0 +1,130 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the StreamProcessor class.
+ *  @author Vishal Bansal
+ */
+public class StreamProcessorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    /** Return a machine holding the naval rotors B, Beta, III, IV and I. */
+    private Machine machine() {
+        HashMap<String, String> nav = TestUtils.NAVALA;
+        HashMap<String, Rotor> rotors = new HashMap<>();
+        rotors.put("B", new Reflector("B", new Permutation(nav.get("B"), AZ)));
+        rotors.put("Beta", new FixedRotor("Beta",
+                new Permutation(nav.get("Beta"), AZ)));
+        rotors.put("III", new MovingRotor("III",
+                new Permutation(nav.get("III"), AZ), "V"));
+        rotors.put("IV", new MovingRotor("IV",
+                new Permutation(nav.get("IV"), AZ), "J"));
+        rotors.put("I", new MovingRotor("I",
+                new Permutation(nav.get("I"), AZ), "Q"));
+        return new Machine(AZ, 5, 3, rotors.values());
+    }
+
+    /** Return the output of a new StreamProcessor given INPUT. */
+    private String process(String input) throws IOException {
+        return process(processor(), input);
+    }
+
+    /** Return a StreamProcessor in ASCII for a naval machine whose
+     *  settings lines give only the rotor settings. */
+    private StreamProcessor processor() {
+        return processor(StandardCharsets.US_ASCII);
+    }
+
+    /** Return a StreamProcessor in CHARSET for a naval machine whose
+     *  settings lines give only the rotor settings. */
+    private StreamProcessor processor(Charset charset) {
+        Machine mach = machine();
+        return new StreamProcessor(mach,
+            settings -> {
+                mach.insertRotors(new String[] {"B", "Beta", "III", "IV",
+                                                "I"});
+                mach.setRotors(settings.substring(2));
+                mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                        AZ));
+            }, charset);
+    }
+
+    /** Return the output of PROCESSOR given INPUT. */
+    private String process(StreamProcessor processor, String input)
+        throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        process(processor, input, out);
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    /** Apply PROCESSOR to INPUT, writing the results to OUT. */
+    private void process(StreamProcessor processor, String input,
+                         ByteArrayOutputStream out) throws IOException {
+        processor.process(Channels.newChannel(new ByteArrayInputStream(
+                input.getBytes(StandardCharsets.UTF_8))), out);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testGroups() throws IOException {
+        String nl = System.lineSeparator();
+        assertEquals("QVPQS OKOIL PUBKJ ZPISF XDW" + nl + nl + "QVPQS " + nl
+                + "QVPQ" + nl,
+                process("* AXLE\r\nFROM HIS SHOULDER HIAWATHA\n\n"
+                        + "* AXLE\nFROMH\n* AXLE\rFROM"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMissingSetting() throws IOException {
+        process("FROM HIS SHOULDER\n");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMissingSettingOnReuse() throws IOException {
+        StreamProcessor processor = processor();
+        process(processor, "* AXLE\nFROM\n");
+        process(processor, "FROM HIS SHOULDER\n");
+    }
+
+    @Test
+    public void testOutputBeforeError() throws IOException {
+        String nl = System.lineSeparator();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            process(processor(), "* AXLE\nFROMH\n\n* AXLE\nFROM\nBAD 123\n",
+                    out);
+            fail("no error reported");
+        } catch (EnigmaException excp) {
+            assertEquals("character 1 not in alphabet", excp.getMessage());
+        }
+        assertEquals("QVPQS " + nl + nl + "QVPQ" + nl,
+                out.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testUnicodeLineEnds() throws IOException {
+        String nl = System.lineSeparator();
+        assertEquals("QVPQS " + nl + "QVPQ" + nl + nl,
+                process(processor(StandardCharsets.UTF_8),
+                        "* AXLE\u2028FROMH\u0085* AXLE\u2029FROM\u2028\n"));
+    }
+}
@@ -1,6 +1,8 @@
 package enigma;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 /** Utility definitions for use in unit tests.
  *  @author P. N. Hilfinger
@@ -126,4 +128,25 @@ class TestUtils {
         NAVALZ_MAP.put("Gamma", "EGTPLBOVFSINCUJZDXMRQAYWHK");
     }
 
+    /** Return a machine over UPPER with NUMROTORS slots and PAWLS pawls
+     *  offering the naval rotors ROTORS, in the A setting of NAVALA.
+     *  Each rotor is given by its name, followed, for a moving rotor, by
+     *  a colon and its notches, as in "I:Q".  Reflectors B and C, and
+     *  rotors given with no colon, are reflecting and fixed rotors. */
+    static Machine navalMachine(int numRotors, int pawls,
+                                String... rotors) {
+        List<Rotor> all = new ArrayList<>();
+        for (String rotor : rotors) {
+            String[] parts = rotor.split(":", 2);
+            Permutation perm = new Permutation(NAVALA.get(parts[0]), UPPER);
+            if (parts.length == 2) {
+                all.add(new MovingRotor(parts[0], perm, parts[1]));
+            } else if (parts[0].equals("B") || parts[0].equals("C")) {
+                all.add(new Reflector(parts[0], perm));
+            } else {
+                all.add(new FixedRotor(parts[0], perm));
+            }
+        }
+        return new Machine(UPPER, numRotors, pawls, all);
+    }
 }
@@ -0,0 +1,149 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.util.concurrent.locks.LockSupport;
+
+/** A tracer that writes compact records into a ring buffer, which a
+ *  separate thread formats and prints in the form
+ *  "[SETTINGS] C -> C1 -> ... -> RESULT".  Only the converting thread
+ *  may report to a TraceBuffer.  If the buffer fills, the converting
+ *  thread waits for the printer to catch up, so nothing is lost.
+ *  @author Vishal Bansal
+ */
+final class TraceBuffer implements Tracer {
+
+    /** Number of records in the ring buffer.  A power of 2. */
+    private static final int CAPACITY = 1 << 16;
+
+    /** Record type: start of a conversion. */
+    private static final int OPEN = 0;
+    /** Record type: a rotor setting. */
+    private static final int SETTING = 1;
+    /** Record type: the character pressed. */
+    private static final int KEY = 2;
+    /** Record type: an intermediate character. */
+    private static final int HOP = 3;
+    /** Record type: the converted character. */
+    private static final int RESULT = 4;
+    /** Number of bits holding a record's value. */
+    private static final int VALUE_BITS = 24;
+
+    /** A trace buffer that prints characters of ALPHABET to OUT. */
+    TraceBuffer(Alphabet alphabet, PrintStream out) {
+        _alphabet = alphabet;
+        _out = out;
+        _printer = new Thread(this::print, "enigma-trace");
+        _printer.setDaemon(true);
+        _printer.start();
+    }
+
+    @Override
+    public void keypress(Machine machine, int c) {
+        put(OPEN, 0);
+        for (int r = 1; r < machine.numRotors(); r += 1) {
+            put(SETTING, machine.getRotor(r).setting());
+        }
+        put(KEY, c);
+    }
+
+    @Override
+    public void hop(int c) {
+        put(HOP, c);
+    }
+
+    @Override
+    public void result(int c) {
+        put(RESULT, c);
+    }
+
+    /** Print everything recorded so far and stop the printing thread. */
+    void close() {
+        _closed = true;
+        LockSupport.unpark(_printer);
+        try {
+            _printer.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+        _out.flush();
+    }
+
+    /** Append a record of type TYPE with value VALUE to the buffer. */
+    private void put(int type, int value) {
+        long head = _head;
+        while (head - _tail == CAPACITY) {
+            Thread.onSpinWait();
+        }
+        _records[(int) head & (CAPACITY - 1)] = type << VALUE_BITS | value;
+        _head = head + 1;
+    }
+
+    /** Body of the printing thread: format records until closed.  The
+     *  printer reads _closed before _head, so that once it sees that I am
+     *  closed, it also sees every record written before close. */
+    private void print() {
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            boolean closed = _closed;
+            long head = _head;
+            long tail = _tail;
+            if (tail == head) {
+                if (closed) {
+                    return;
+                }
+                _out.flush();
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            for (; tail < head; tail += 1) {
+                int record = _records[(int) tail & (CAPACITY - 1)];
+                format(record >>> VALUE_BITS,
+                        _alphabet.toChar(record & (1 << VALUE_BITS) - 1),
+                        line);
+            }
+            _tail = tail;
+        }
+    }
+
+    /** Append the text for a record of type TYPE and character C to LINE,
+     *  printing LINE when it is complete. */
+    private void format(int type, char c, StringBuilder line) {
+        switch (type) {
+        case OPEN:
+            line.append('[');
+            break;
+        case SETTING:
+            line.append(c);
+            break;
+        case KEY:
+            line.append("] ").append(c).append(" -> ");
+            break;
+        case HOP:
+            line.append(c).append(" -> ");
+            break;
+        default:
+            line.append(c);
+            _out.println(line);
+            line.setLength(0);
+            break;
+        }
+    }
+
+    /** Time the printing thread sleeps when it has nothing to do. */
+    private static final long IDLE_NANOS = 100_000;
+
+    /** Alphabet of the machine being traced. */
+    private final Alphabet _alphabet;
+    /** Destination of the formatted trace. */
+    private final PrintStream _out;
+    /** Thread that formats and prints records. */
+    private final Thread _printer;
+    /** The ring buffer of records. */
+    private final int[] _records = new int[CAPACITY];
+    /** Number of records ever written. */
+    private volatile long _head;
+    /** Number of records ever printed. */
+    private volatile long _tail;
+    /** True once close has been called. */
+    private volatile boolean _closed;
+}
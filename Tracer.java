@@ -0,0 +1,36 @@
+package enigma;
+
+/** Receives each stage of the conversions made by a machine.  A machine
+ *  reports a keypress, then the character after the plugboard and after
+ *  each rotor it passes through, then the result.
+ *  @author Vishal Bansal
+ */
+interface Tracer {
+
+    /** A tracer that ignores everything it is told.  Calls to it compile
+     *  to nothing. */
+    Tracer NONE = new Tracer() {
+        @Override
+        public void keypress(Machine machine, int c) {
+        }
+
+        @Override
+        public void hop(int c) {
+        }
+
+        @Override
+        public void result(int c) {
+        }
+    };
+
+    /** Record that MACHINE, its rotors just advanced, is converting the
+     *  character with index C. */
+    void keypress(Machine machine, int c);
+
+    /** Record that the character being converted has become index C. */
+    void hop(int c);
+
+    /** Record that the character being converted has been converted to
+     *  index C. */
+    void result(int c);
+}
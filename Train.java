@@ -0,0 +1,318 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static enigma.EnigmaException.*;
+
+/** Builds an n-gram model (see NgramModel) from plaintext corpora.
+ *
+ *  The corpus files, read as UTF-8, are divided into chunks that start
+ *  and end on character boundaries.  A fixed number of worker threads
+ *  take chunks in turn and stream each through a block buffer, mapping
+ *  characters to the indices of an alphabet and dropping those that
+ *  are in neither it nor (after conversion to upper case) its upper-case
+ *  form.  Each worker counts the k-grams, for k from 1 to N, that start in
+ *  its chunks into its own long arrays, reading just past the end of a
+ *  chunk to complete those that cross into the next.  The workers' counts
+ *  are summed at the end, so memory use beyond the count arrays does not
+ *  depend on the size of the corpus.
+ *  @author Vishal Bansal
+ */
+final class Train {
+
+    /** Size of input blocks, in bytes. */
+    static final int BLOCK_SIZE = 1 << 20;
+    /** Size of the chunks of a corpus file given to one worker. */
+    static final long CHUNK_SIZE = 64L << 20;
+
+    /** A trainer counting the 1- to N-grams of ALPHABET with THREADS
+     *  worker threads. */
+    Train(Alphabet alphabet, int n, int threads) {
+        if (n < 1 || threads < 1) {
+            throw error("bad n-gram order or thread count");
+        }
+        NgramModel.power(alphabet.size(), n);
+        _alphabet = alphabet;
+        _order = n;
+        _threads = threads;
+    }
+
+    /** Divide corpus files into chunks of about SIZE bytes. */
+    void setChunkSize(long size) {
+        _chunkSize = size;
+    }
+
+    /** Return the model given by the n-gram counts of the files named
+     *  CORPUS.  An exception that stops any worker is rethrown here. */
+    NgramModel train(List<String> corpus) {
+        _chunks.clear();
+        for (String name : corpus) {
+            divide(Paths.get(name));
+        }
+        _next.set(0);
+        Worker[] workers = new Worker[_threads];
+        for (int i = 0; i < _threads; i++) {
+            workers[i] = new Worker();
+            workers[i].start();
+        }
+        long[][] total = null;
+        for (Worker worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException excp) {
+                throw error("training interrupted");
+            }
+            if (worker._error != null) {
+                throw worker._error;
+            }
+            if (total == null) {
+                total = worker._counts;
+            } else {
+                for (int k = 0; k < _order; k++) {
+                    for (int i = 0; i < total[k].length; i++) {
+                        total[k][i] += worker._counts[k][i];
+                    }
+                }
+            }
+        }
+        double[][] counts = new double[_order][];
+        for (int k = 0; k < _order; k++) {
+            counts[k] = new double[total[k].length];
+            for (int i = 0; i < total[k].length; i++) {
+                counts[k][i] = total[k][i];
+            }
+            total[k] = null;
+        }
+        return NgramModel.fromCounts(_alphabet, counts);
+    }
+
+    /** Add the chunks of the file FILE to _chunks. */
+    private void divide(Path file) {
+        try (FileChannel channel = FileChannel.open(file)) {
+            long size = channel.size();
+            long start = 0;
+            while (start < size) {
+                long end = boundary(channel, Math.min(size,
+                        start + _chunkSize));
+                _chunks.add(new Chunk(file, start, end));
+                start = end;
+            }
+        } catch (IOException excp) {
+            throw error("could not read %s", file);
+        }
+    }
+
+    /** Return the first position at or after POSN in CHANNEL that does
+     *  not hold a UTF-8 continuation byte. */
+    private static long boundary(FileChannel channel, long posn)
+        throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        while (posn < channel.size()) {
+            one.clear();
+            channel.read(one, posn);
+            if ((one.get(0) & 0xc0) != 0x80) {
+                break;
+            }
+            posn += 1;
+        }
+        return posn;
+    }
+
+    /** A part of a corpus file. */
+    private static final class Chunk {
+        /** The bytes START to END of FILE. */
+        Chunk(Path file, long start, long end) {
+            _file = file;
+            _start = start;
+            _end = end;
+        }
+
+        /** File containing me. */
+        private final Path _file;
+        /** Position of my first byte. */
+        private final long _start;
+        /** Position just past my last byte. */
+        private final long _end;
+    }
+
+    /** A thread counting the n-grams of chunks until none are left. */
+    private final class Worker extends Thread {
+
+        /** A worker with counts of zero. */
+        Worker() {
+            _counts = new long[_order][];
+            for (int k = 1; k <= _order; k++) {
+                _counts[k - 1] = new long[NgramModel.power(
+                        _alphabet.size(), k)];
+            }
+            _modulus = _counts[_order - 1].length / _alphabet.size();
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = _next.getAndIncrement(); i < _chunks.size();
+                     i = _next.getAndIncrement()) {
+                    count(_chunks.get(i));
+                }
+            } catch (RuntimeException excp) {
+                _error = excp;
+            }
+        }
+
+        /** Count the n-grams that start in CHUNK. */
+        private void count(Chunk chunk) {
+            try (FileChannel channel = FileChannel.open(chunk._file)) {
+                _seen = 0;
+                _index = 0;
+                _inside = Long.MAX_VALUE;
+                long posn = read(channel, chunk._start, chunk._end, false);
+                _inside = _seen;
+                read(channel, posn, channel.size(), true);
+            } catch (IOException excp) {
+                throw error("could not read %s", chunk._file);
+            }
+        }
+
+        /** Read and count the characters of CHANNEL from position START
+         *  to END.  If TAIL, stop once the n-grams that started before
+         *  it are complete.  Returns the position reached. */
+        private long read(FileChannel channel, long start, long end,
+                          boolean tail) throws IOException {
+            long posn = start;
+            _bytes.clear();
+            _decoder.reset();
+            while (!(tail && _seen - _inside >= _order - 1)) {
+                int room = (int) Math.min(_bytes.remaining(), end - posn);
+                if (room == 0 && _bytes.position() == 0) {
+                    break;
+                }
+                _bytes.limit(_bytes.position() + room);
+                int got = channel.read(_bytes, posn);
+                posn += Math.max(got, 0);
+                boolean last = got <= 0 || posn >= end;
+                _bytes.flip();
+                _chars.clear();
+                _decoder.decode(_bytes, _chars, last);
+                if (last) {
+                    _decoder.flush(_chars);
+                }
+                _chars.flip();
+                while (_chars.hasRemaining()
+                       && !(tail && _seen - _inside >= _order - 1)) {
+                    accept(_chars.get());
+                }
+                _bytes.compact();
+                if (last) {
+                    break;
+                }
+            }
+            return posn;
+        }
+
+        /** Count the n-grams ending with character C that started in the
+         *  current chunk, if C is in the alphabet. */
+        private void accept(char c) {
+            int x = _alphabet.toInt(c);
+            if (x == -1) {
+                x = _alphabet.toInt(Character.toUpperCase(c));
+                if (x == -1) {
+                    return;
+                }
+            }
+            _index = _index % _modulus * _alphabet.size() + x;
+            int span = _alphabet.size();
+            for (int k = 1; k <= _order; k++) {
+                long first = _seen - k + 1;
+                if (first >= 0 && first < _inside) {
+                    _counts[k - 1][_index % span] += 1;
+                }
+                span *= _alphabet.size();
+            }
+            _seen += 1;
+        }
+
+        /** _counts[K-1][I] is the count of the K-gram with index I. */
+        private final long[][] _counts;
+        /** Number of (N-1)-grams. */
+        private final int _modulus;
+        /** Index of the last N characters read. */
+        private int _index;
+        /** Number of characters counted in the current chunk. */
+        private long _seen;
+        /** Number of those characters that lie in the chunk itself. */
+        private long _inside;
+        /** The exception that stopped me, or null. */
+        private RuntimeException _error;
+        /** Input block. */
+        private final ByteBuffer _bytes = ByteBuffer.allocate(BLOCK_SIZE);
+        /** Decoded input block. */
+        private final CharBuffer _chars = CharBuffer.allocate(BLOCK_SIZE);
+        /** Decodes the input. */
+        private final CharsetDecoder _decoder =
+            StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /** Train a model as specified by ARGS: options, a configuration file
+     *  whose alphabet is modeled, the name of the model file to write,
+     *  and the corpus files.  The options are --order=N, the length of the
+     *  longest n-grams (4 by default), and --threads=T, the number of
+     *  worker threads (by default, one per processor). */
+    public static void main(String... args) {
+        try {
+            List<String> files = new ArrayList<>();
+            int order = DEFAULT_ORDER;
+            int threads = Runtime.getRuntime().availableProcessors();
+            for (String arg : args) {
+                if (arg.startsWith("--order=")) {
+                    order = Integer.parseInt(arg.substring(8));
+                } else if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.substring(10));
+                } else {
+                    files.add(arg);
+                }
+            }
+            if (files.size() < 3) {
+                throw error("Usage: java enigma.Train [--order=N] "
+                        + "[--threads=T] CONFIG MODEL CORPUS...");
+            }
+            Alphabet alphabet = Main.loadConfig(files.get(0)).alphabet();
+            Train train = new Train(alphabet, order, threads);
+            train.train(files.subList(2, files.size()))
+                .write(files.get(1));
+            return;
+        } catch (EnigmaException | NumberFormatException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Default length of the longest n-grams. */
+    private static final int DEFAULT_ORDER = 4;
+
+    /** Alphabet of the n-grams. */
+    private final Alphabet _alphabet;
+    /** Length of the longest n-grams. */
+    private final int _order;
+    /** Number of worker threads. */
+    private final int _threads;
+    /** Approximate size of a chunk. */
+    private long _chunkSize = CHUNK_SIZE;
+    /** Chunks of the corpus. */
+    private final List<Chunk> _chunks = new ArrayList<>();
+    /** Index in _chunks of the next chunk to be counted. */
+    private final AtomicInteger _next = new AtomicInteger();
+}
@@ -0,0 +1,104 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Train class.
+ *  @author Vishal Bansal
+ */
+public class TrainTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final Alphabet ABC = new Alphabet("ABC");
+
+    /** Return a new temporary file containing TEXT in UTF-8, deleted on
+     *  exit. */
+    private String corpus(String text) throws IOException {
+        File result = File.createTempFile("corpus", null);
+        result.deleteOnExit();
+        Files.write(result.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return result.getPath();
+    }
+
+    /** Return the counts of the 1- to N-grams of ABC in TEXT, after
+     *  dropping the characters not in ABC. */
+    private double[][] counts(String text, int n) {
+        StringBuilder kept = new StringBuilder();
+        for (char c : text.toUpperCase().toCharArray()) {
+            if (ABC.contains(c)) {
+                kept.append(c);
+            }
+        }
+        double[][] result = new double[n][];
+        for (int k = 1; k <= n; k++) {
+            result[k - 1] = new double[(int) Math.pow(3, k)];
+            for (int i = 0; i + k <= kept.length(); i++) {
+                int index = 0;
+                for (int j = i; j < i + k; j++) {
+                    index = index * 3 + ABC.toInt(kept.charAt(j));
+                }
+                result[k - 1][index] += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Assert that MODEL has the same tables as EXPECTED. */
+    private void assertSameModel(NgramModel expected, NgramModel model) {
+        assertEquals(expected.order(), model.order());
+        for (int k = 1; k <= model.order(); k++) {
+            for (int i = 0; i < (int) Math.pow(3, k); i++) {
+                assertEquals("k=" + k + ", i=" + i,
+                        expected.logProbability(k, i),
+                        model.logProbability(k, i), 1e-6);
+            }
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSmallChunks() throws IOException {
+        String one = "abcab \u00e9\u00e9CCA--b\u20acaa\u00e9 bca\nCBA";
+        String two = "\u00e9ba";
+        Train train = new Train(ABC, 3, 3);
+        for (long size = 1; size < 12; size++) {
+            train.setChunkSize(size);
+            NgramModel model = train.train(List.of(corpus(one),
+                    corpus(two)));
+            double[][] expected = counts(one, 3);
+            double[][] more = counts(two, 3);
+            for (int k = 0; k < 3; k++) {
+                for (int i = 0; i < expected[k].length; i++) {
+                    expected[k][i] += more[k][i];
+                }
+            }
+            assertSameModel(NgramModel.fromCounts(ABC, expected), model);
+        }
+    }
+
+    @Test
+    public void testLargeCorpus() throws IOException {
+        String text = "ab,c. ".repeat(200000) + "ba";
+        NgramModel model = new Train(ABC, 2, 2).train(List.of(corpus(text)));
+        assertSameModel(NgramModel.fromCounts(ABC, counts(text, 2)), model);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMissingFile() {
+        new Train(ABC, 2, 1).train(List.of("/nonexistent/corpus"));
+    }
+}
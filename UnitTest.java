@@ -14,9 +14,26 @@ public class UnitTest {
             System.exit(textui.runClasses(PermutationTest.class,
                     MovingRotorTest.class));
         }
-        System.exit(textui.runClasses(PermutationTest.class,
+        System.exit(textui.runClasses(AlphabetTest.class,
+                PermutationTest.class,
                 MovingRotorTest.class,
-                MachineTest.class));
+                MachineTest.class,
+                MainTest.class,
+                StreamProcessorTest.class,
+                BombeTest.class,
+                AttackTest.class,
+                NgramModelTest.class,
+                TrainTest.class,
+                CompiledConfigTest.class,
+                LexerTest.class,
+                RotorRegistryTest.class,
+                KeyspaceTest.class,
+                BatchDecryptorTest.class,
+                MetricsTest.class,
+                ServerTest.class,
+                FlowProcessorTest.class,
+                PlugboardSolverTest.class,
+                CycleCatalogTest.class));
     }
 
 }